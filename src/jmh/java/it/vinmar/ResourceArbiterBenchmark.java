@@ -0,0 +1,165 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.vinmar.ResourceArbiter.Factory;
+
+/**
+ * Throughput and latency distribution of reserve/free under contention.
+ * Resources are plain in-memory objects created by a factory with synthetic latency,
+ * so benchmark runs everywhere without any browser.
+ *
+ * Thread count is set via JMH option {@code -t}, e.g. {@code -t 512}.
+ * Each operation is a completed reserve/free, reservations that found no resource
+ * are retried after a short park and reported apart as {@code misses}.
+ *
+ * Default parameters are a small matrix that runs in a few minutes,
+ * other values are passed via JMH option {@code -p}, e.g. {@code -p poolSize=8,256}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class ResourceArbiterBenchmark {
+
+	/**
+	 * Park after a missed reservation, so that spinning threads leave CPU to holders
+	 */
+	private static final long MISS_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+	/**
+	 * Factory of in-memory resources with a synthetic creation latency
+	 */
+	static final class InMemoryFactory implements Factory<Object> {
+
+		private final long creationNanos;
+
+		InMemoryFactory(final long inCreationMicros) {
+			creationNanos = TimeUnit.MICROSECONDS.toNanos(inCreationMicros);
+		}
+
+		@Override
+		public Object newResource() {
+			if (creationNanos > 0L) {
+				LockSupport.parkNanos(creationNanos);
+			}
+			return new Object();
+		}
+
+		@Override
+		public void closeResource(final Object resource) {
+			// nothing to release
+		}
+	}
+
+	/**
+	 * Number of resources into the pool
+	 */
+	@Param({ "64" })
+	public int poolSize;
+
+	/**
+	 * Synthetic factory latency paid at each renewal
+	 */
+	@Param({ "1000" })
+	public long creationMicros;
+
+	/**
+	 * Iterations served by each resource before renewal
+	 */
+	@Param({ "1000" })
+	public int maxIterations;
+
+	/**
+	 * Threads renewing in background, 0 renews on caller thread
+	 */
+	@Param({ "0", "2" })
+	public int renewalThreads;
+
+	/**
+	 * CPU work done while holding a resource
+	 */
+	@Param({ "100" })
+	public long holdTokens;
+
+	/**
+	 * Shards of idle resources
+	 */
+	@Param({ "1", "8" })
+	public int shards;
+
+	/**
+	 * Reservations of a thread that found no resource
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Misses {
+
+		public long misses;
+	}
+
+	private ResourceArbiter<Object> arbiter;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		arbiter = ResourceArbiter.builder(new InMemoryFactory(creationMicros))
+				.size(poolSize)
+				.maxIterations(maxIterations)
+				.renewalThreads(renewalThreads)
+				.shards(shards)
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		arbiter.shutdown(Duration.ofSeconds(5));
+	}
+
+	@Benchmark
+	public void reserveFree(final Misses counters) {
+
+		Optional<Object> item;
+		while (!(item = arbiter.reserve()).isPresent()) {
+			counters.misses++;
+			LockSupport.parkNanos(MISS_BACKOFF_NANOS);
+		}
+
+		Blackhole.consumeCPU(holdTokens);
+		arbiter.free(item.get());
+	}
+
+	@Benchmark
+	public void reserveWaitFree(final Misses counters) throws InterruptedException {
+
+		Optional<Object> item;
+		while (!(item = arbiter.reserve(Duration.ofSeconds(10))).isPresent()) {
+			counters.misses++;
+		}
+
+		Blackhole.consumeCPU(holdTokens);
+		arbiter.free(item.get());
+	}
+}
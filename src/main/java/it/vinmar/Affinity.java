@@ -0,0 +1,43 @@
+package it.vinmar;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Built-in affinity keys to be used with {@code ResourceArbiter.reserveFor}.
+ * Any object with proper {@code equals} and {@code hashCode} can be used as key.
+ */
+public final class Affinity {
+
+	private Affinity() {
+		// only static methods
+	}
+
+	/**
+	 * Key of calling thread, consecutive reservations of same JMeter thread get same resource
+	 *
+	 * @return key of current thread
+	 */
+	public static Object currentThread() {
+		return "thread:" + Thread.currentThread().getId();
+	}
+
+	/**
+	 * Key of target host, consecutive reservations for same host get same resource
+	 *
+	 * @param url is navigation url, a bare host name is accepted too
+	 *
+	 * @return key of url host
+	 */
+	public static Object host(final String url) {
+
+		String host = null;
+		try {
+			host = URI.create(url).getHost();
+		} catch (final IllegalArgumentException e) {
+			host = null;
+		}
+
+		return "host:" + (host != null ? host : url).toLowerCase(Locale.ROOT);
+	}
+}
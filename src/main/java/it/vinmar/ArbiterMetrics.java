@@ -0,0 +1,69 @@
+package it.vinmar;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms recorded by a {@code ResourceArbiter}
+ */
+final class ArbiterMetrics {
+
+	/**
+	 * Time spent by successful reservations waiting for a resource
+	 */
+	final LatencyHistogram waitTime = new LatencyHistogram();
+
+	/**
+	 * Time between reservation and free of a resource
+	 */
+	final LatencyHistogram holdTime = new LatencyHistogram();
+
+	/**
+	 * Time spent by {@code Factory} to create a resource
+	 */
+	final LatencyHistogram creationTime = new LatencyHistogram();
+
+	/**
+	 * Non-blocking reservations that found no idle resource
+	 */
+	final LongAdder emptyReserveMisses = new LongAdder();
+
+	/**
+	 * Waiting reservations that gave up
+	 */
+	final LongAdder reserveTimeouts = new LongAdder();
+
+	/**
+	 * Resources retired and substituted
+	 */
+	final LongAdder renewals = new LongAdder();
+
+	/**
+	 * Renewals postponed because of max concurrent renewals
+	 */
+	final LongAdder deferredRenewals = new LongAdder();
+
+	/**
+	 * Resources found invalid on borrow or by background check
+	 */
+	final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * Leases held beyond max hold time and reclaimed by reaper
+	 */
+	final LongAdder reclaimedLeases = new LongAdder();
+
+	/**
+	 * Failed resource creations
+	 */
+	final LongAdder creationFailures = new LongAdder();
+
+	/**
+	 * Resource creations delayed by host admission
+	 */
+	final LongAdder hostDelays = new LongAdder();
+
+	/**
+	 * Resource creations refused by host admission
+	 */
+	final LongAdder hostRefusals = new LongAdder();
+}
@@ -0,0 +1,179 @@
+package it.vinmar;
+
+/**
+ * Immutable snapshot of {@code ResourceArbiter} instrumentation
+ */
+public final class ArbiterStats implements ArbiterStatsMXBean {
+
+	private final int capacity;
+	private final int size;
+	private final int idle;
+	private final int busy;
+	private final int renewing;
+	private final int waiters;
+	private final int spares;
+	private final long emptyReserveMisses;
+	private final long reserveTimeouts;
+	private final long renewals;
+	private final long deferredRenewals;
+	private final long invalidations;
+	private final long reclaimedLeases;
+	private final long creationFailures;
+	private final long hostDelays;
+	private final long hostRefusals;
+	private final boolean hostLimited;
+	private final LatencySummary waitTime;
+	private final LatencySummary holdTime;
+	private final LatencySummary creationTime;
+
+	ArbiterStats(
+			final int inCapacity,
+			final int inSize,
+			final int inIdle,
+			final int inBusy,
+			final int inRenewing,
+			final int inWaiters,
+			final int inSpares,
+			final boolean inHostLimited,
+			final ArbiterMetrics metrics) {
+		capacity = inCapacity;
+		size = inSize;
+		idle = inIdle;
+		busy = inBusy;
+		renewing = inRenewing;
+		waiters = inWaiters;
+		spares = inSpares;
+		emptyReserveMisses = metrics.emptyReserveMisses.sum();
+		reserveTimeouts = metrics.reserveTimeouts.sum();
+		renewals = metrics.renewals.sum();
+		deferredRenewals = metrics.deferredRenewals.sum();
+		invalidations = metrics.invalidations.sum();
+		reclaimedLeases = metrics.reclaimedLeases.sum();
+		creationFailures = metrics.creationFailures.sum();
+		hostDelays = metrics.hostDelays.sum();
+		hostRefusals = metrics.hostRefusals.sum();
+		hostLimited = inHostLimited;
+		waitTime = metrics.waitTime.summary();
+		holdTime = metrics.holdTime.summary();
+		creationTime = metrics.creationTime.summary();
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public int getIdle() {
+		return idle;
+	}
+
+	@Override
+	public int getBusy() {
+		return busy;
+	}
+
+	@Override
+	public int getRenewing() {
+		return renewing;
+	}
+
+	@Override
+	public int getWaiters() {
+		return waiters;
+	}
+
+	@Override
+	public int getSpares() {
+		return spares;
+	}
+
+	@Override
+	public long getReservations() {
+		return waitTime.getCount();
+	}
+
+	@Override
+	public long getEmptyReserveMisses() {
+		return emptyReserveMisses;
+	}
+
+	@Override
+	public long getReserveTimeouts() {
+		return reserveTimeouts;
+	}
+
+	@Override
+	public long getRenewals() {
+		return renewals;
+	}
+
+	@Override
+	public long getDeferredRenewals() {
+		return deferredRenewals;
+	}
+
+	@Override
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	@Override
+	public long getReclaimedLeases() {
+		return reclaimedLeases;
+	}
+
+	@Override
+	public long getCreations() {
+		return creationTime.getCount();
+	}
+
+	@Override
+	public long getCreationFailures() {
+		return creationFailures;
+	}
+
+	@Override
+	public long getHostDelays() {
+		return hostDelays;
+	}
+
+	@Override
+	public long getHostRefusals() {
+		return hostRefusals;
+	}
+
+	@Override
+	public boolean isHostLimited() {
+		return hostLimited;
+	}
+
+	@Override
+	public LatencySummary getWaitTime() {
+		return waitTime;
+	}
+
+	@Override
+	public LatencySummary getHoldTime() {
+		return holdTime;
+	}
+
+	@Override
+	public LatencySummary getCreationTime() {
+		return creationTime;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"size=%d/%d idle=%d busy=%d renewing=%d waiters=%d spares=%d reservations=%d misses=%d timeouts=%d renewals=%d deferred=%d invalidations=%d reclaimed=%d creations=%d failures=%d hostDelays=%d hostRefusals=%d hostLimited=%s wait[%s] hold[%s] creation[%s]",
+				size, capacity, idle, busy, renewing, waiters, spares,
+				getReservations(), emptyReserveMisses, reserveTimeouts, renewals, deferredRenewals, invalidations, reclaimedLeases, getCreations(), creationFailures, hostDelays, hostRefusals, hostLimited,
+				waitTime, holdTime, creationTime);
+	}
+}
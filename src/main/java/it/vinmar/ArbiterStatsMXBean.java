@@ -0,0 +1,118 @@
+package it.vinmar;
+
+/**
+ * Management interface of a {@code ResourceArbiter}, exposed via JMX
+ * so pool behaviour can be followed live from JConsole or JMeter.
+ */
+public interface ArbiterStatsMXBean {
+
+	/**
+	 * @return max number of resources the pool can hold
+	 */
+	int getCapacity();
+
+	/**
+	 * @return number of resources into the pool
+	 */
+	int getSize();
+
+	/**
+	 * @return number of resources ready to be reserved
+	 */
+	int getIdle();
+
+	/**
+	 * @return number of reserved resources
+	 */
+	int getBusy();
+
+	/**
+	 * @return number of slots out of service while their resource is created
+	 */
+	int getRenewing();
+
+	/**
+	 * @return number of threads waiting for a resource
+	 */
+	int getWaiters();
+
+	/**
+	 * @return number of warm spare resources
+	 */
+	int getSpares();
+
+	/**
+	 * @return number of successful reservations
+	 */
+	long getReservations();
+
+	/**
+	 * @return number of non-blocking reservations that found no idle resource
+	 */
+	long getEmptyReserveMisses();
+
+	/**
+	 * @return number of waiting reservations that gave up
+	 */
+	long getReserveTimeouts();
+
+	/**
+	 * @return number of resources retired and substituted
+	 */
+	long getRenewals();
+
+	/**
+	 * @return number of renewals postponed because of max concurrent renewals
+	 */
+	long getDeferredRenewals();
+
+	/**
+	 * @return number of resources found invalid and renewed
+	 */
+	long getInvalidations();
+
+	/**
+	 * @return number of leases held beyond max hold time and reclaimed
+	 */
+	long getReclaimedLeases();
+
+	/**
+	 * @return number of resources created by factory
+	 */
+	long getCreations();
+
+	/**
+	 * @return number of failed resource creations
+	 */
+	long getCreationFailures();
+
+	/**
+	 * @return number of resource creations delayed by host admission
+	 */
+	long getHostDelays();
+
+	/**
+	 * @return number of resource creations refused by host admission
+	 */
+	long getHostRefusals();
+
+	/**
+	 * @return true if host admission is delaying a creation or refused the last one
+	 */
+	boolean isHostLimited();
+
+	/**
+	 * @return time spent by reservations waiting for a resource
+	 */
+	LatencySummary getWaitTime();
+
+	/**
+	 * @return time between reservation and free of a resource
+	 */
+	LatencySummary getHoldTime();
+
+	/**
+	 * @return time spent by factory to create a resource
+	 */
+	LatencySummary getCreationTime();
+}
@@ -0,0 +1,230 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.vinmar.ResourceArbiter.CapacityBudget;
+
+/**
+ * Sizing of an elastic {@code ResourceArbiter}. Pool grows in background on demand up to
+ * its vacant slots and shrinks when resources stay idle, capacity can be shared among pools.
+ *
+ * @param <T> the type of handled resource
+ */
+final class ElasticSizing<T> {
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = LoggerFactory.getLogger("root");
+
+	/**
+	 * Arbiter owning slots
+	 */
+	private final ResourceArbiter<T> arbiter;
+
+	/**
+	 * Waiting side of arbiter
+	 */
+	private final LaneScheduler<T> scheduler;
+
+	/**
+	 * Executor creating new resources
+	 */
+	private final ScheduledExecutorService maintenance;
+
+	/**
+	 * Capacity shared with other pools, null when only max total applies
+	 */
+	private final CapacityBudget budget;
+
+	/**
+	 * Number of idle resources kept ready
+	 */
+	private final int minIdle;
+
+	/**
+	 * Time after which a surplus idle resource is closed, zero to never shrink
+	 */
+	private final long idleTimeoutNanos;
+
+	/**
+	 * Number of slots being populated in background
+	 */
+	private final AtomicInteger creating = new AtomicInteger(0);
+
+	/**
+	 * @param inArbiter is arbiter owning slots
+	 * @param inScheduler is waiting side of arbiter
+	 * @param inMaintenance is executor creating new resources
+	 * @param inBudget is capacity shared with other pools, null when only max total applies
+	 * @param inMinIdle is number of idle resources kept ready
+	 * @param idleTimeout is time after which a surplus idle resource is closed, zero to never shrink
+	 */
+	ElasticSizing(
+			final ResourceArbiter<T> inArbiter,
+			final LaneScheduler<T> inScheduler,
+			final ScheduledExecutorService inMaintenance,
+			final CapacityBudget inBudget,
+			final int inMinIdle,
+			final Duration idleTimeout) {
+		arbiter = inArbiter;
+		scheduler = inScheduler;
+		maintenance = inMaintenance;
+		budget = inBudget;
+		minIdle = inMinIdle;
+		idleTimeoutNanos = idleTimeout.toNanos();
+	}
+
+	/**
+	 * It schedules idle shrink, if idle timeout is set
+	 */
+	void start() {
+		if (idleTimeoutNanos > 0L) {
+			final long period = Math.max(idleTimeoutNanos / 2L, TimeUnit.MILLISECONDS.toNanos(10L));
+			maintenance.scheduleWithFixedDelay(this::shrinkIdle, period, period, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * It grows pool in background when idle resources plus the ones being created
+	 * don't cover queued waiters and minimum idle size.
+	 *
+	 * @param missed is true when a reservation found no idle resource
+	 */
+	void adjust(final boolean missed) {
+
+		if (arbiter.isShutdown()) {
+			return;
+		}
+
+		for (;;) {
+			// a resource just made idle is still on its way to a waiter or to a missed reservation,
+			// the ones kept for reserved capacity of lanes don't serve other waiters
+			final int idleNow = Math.max(0, arbiter.idleCount() - scheduler.shortfall(-1));
+			final int demand = missed ? Math.max(scheduler.waiterCount(), 1) : scheduler.waiterCount();
+			final int needed = Math.max(minIdle - idleNow, demand - idleNow);
+
+			final int current = creating.get();
+			if (current >= needed) {
+				return;
+			}
+			if (!creating.compareAndSet(current, current + 1)) {
+				continue;
+			}
+
+			if (budget != null && !budget.tryAcquire()) { // shared capacity exhausted
+				creating.decrementAndGet();
+				return;
+			}
+
+			final int slot = arbiter.takeVacant();
+			if (slot == SlotStack.EMPTY) { // max size reached
+				creating.decrementAndGet();
+				releaseCapacity();
+				return;
+			}
+
+			maintenance.execute(() -> populate(slot));
+		}
+	}
+
+	/**
+	 * It asks pool to grow for its queued waiters, e.g. after shared capacity was freed
+	 */
+	void grow() {
+		if (scheduler.waiterCount() > 0) {
+			adjust(false);
+		}
+	}
+
+	/**
+	 * It gives back capacity of a closed resource to shared budget, if any
+	 */
+	void releaseCapacity() {
+		if (budget != null) {
+			budget.release();
+		}
+	}
+
+	/**
+	 * It creates a resource for a vacant slot
+	 *
+	 * @param slot is slot index in RENEWING state
+	 */
+	private void populate(final int slot) {
+
+		try {
+			logger.info("#### Grow of shareable items pool.");
+			arbiter.fill(slot);
+			// new resource is counted as being created until it is idle or handed to a waiter,
+			// so demand arrived meanwhile is checked again
+			creating.decrementAndGet();
+			adjust(false);
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during grow of shareable items pool -> %s", e.getMessage()));
+			creating.decrementAndGet();
+			arbiter.leaveVacant(slot);
+			releaseCapacity();
+			if (!arbiter.isShutdown()) {
+				maintenance.schedule(() -> adjust(false), ResourceArbiter.RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	/**
+	 * It closes resources idle for longer than idle timeout, keeping at least minimum idle size
+	 */
+	private void shrinkIdle() {
+
+		final long now = System.nanoTime();
+
+		for (int slot = 0; slot < arbiter.capacity() && arbiter.idleCount() > minIdle; slot++) {
+
+			if (arbiter.isIdle(slot) && now - arbiter.releasedAt(slot) >= idleTimeoutNanos) {
+
+				final T item = arbiter.evictIdle(slot);
+				if (item != null) {
+					logger.info("#### Shrink of idle shareable item.");
+					arbiter.dispose(item);
+					releaseCapacity();
+				}
+			}
+		}
+	}
+
+	/**
+	 * It closes the least recently used idle resource, so its capacity can be used
+	 * by another pool sharing same budget. Capacity is not given back to budget, it is left to caller.
+	 *
+	 * @return true if a resource was retired
+	 */
+	boolean retireIdle() {
+
+		for (;;) {
+			int oldest = SlotStack.EMPTY;
+			for (int slot = 0; slot < arbiter.capacity(); slot++) {
+				if (arbiter.isIdle(slot)
+						&& (oldest == SlotStack.EMPTY || arbiter.releasedAt(slot) - arbiter.releasedAt(oldest) < 0L)) {
+					oldest = slot;
+				}
+			}
+
+			if (oldest == SlotStack.EMPTY) {
+				return false;
+			}
+
+			final T item = arbiter.evictIdle(oldest);
+			if (item != null) {
+				logger.info("#### Retire of idle shareable item for another pool.");
+				arbiter.retire(item);
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package it.vinmar;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control of resource creation based on capacity of local host. Before each creation
+ * CPU usage, load average and available memory are read from OS; while a threshold is exceeded
+ * creation is delayed and, when max wait elapses, refused. One instance can be shared by several
+ * arbiters, e.g. every pool of a {@code KeyedResourceArbiter}, so they draw on same host.
+ * It makes sense only when resources run on local host, not for Selenium Grid sessions.
+ */
+public final class HostAdmission {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger("root");
+
+	/**
+	 * Outcome of an admission request
+	 */
+	enum Outcome {
+		ADMITTED, DELAYED, REFUSED
+	}
+
+	/**
+	 * Source of host readings, a negative reading means not available and its threshold is skipped
+	 */
+	interface Probe {
+
+		/**
+		 * @return recent CPU usage of whole host in range [0, 1]
+		 */
+		double cpuLoad();
+
+		/**
+		 * @return load average of last minute divided by number of cores
+		 */
+		double loadPerCore();
+
+		/**
+		 * @return bytes of memory available to new processes
+		 */
+		long availableMemory();
+	}
+
+	private final Probe probe;
+
+	private final double maxCpuLoad;
+
+	private final double maxLoadPerCore;
+
+	private final long minAvailableMemory;
+
+	private final long memoryPerResource;
+
+	private final long maxWaitNanos;
+
+	private final long pollIntervalNanos;
+
+	/**
+	 * Creations admitted and not yet completed, their memory is not yet visible to OS
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+
+	/**
+	 * Creations currently delayed by host capacity
+	 */
+	private final AtomicInteger delayed = new AtomicInteger(0);
+
+	/**
+	 * Last admission request was refused
+	 */
+	private volatile boolean refused = false;
+
+	/**
+	 * Constructor used by {@code Builder}
+	 *
+	 * @param builder is the configured builder
+	 */
+	private HostAdmission(final Builder builder) {
+		probe = builder.probe;
+		maxCpuLoad = builder.maxCpuLoad;
+		maxLoadPerCore = builder.maxLoadPerCore;
+		minAvailableMemory = builder.minAvailableMemory;
+		memoryPerResource = builder.memoryPerResource;
+		maxWaitNanos = builder.maxWait.toNanos();
+		pollIntervalNanos = builder.pollInterval.toNanos();
+	}
+
+	/**
+	 * It creates a builder of host admission, without thresholds every creation is admitted
+	 *
+	 * @return a new {@code Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return true if a creation is being delayed or last one was refused by host capacity
+	 */
+	public boolean isLimited() {
+		return refused || delayed.get() > 0;
+	}
+
+	/**
+	 * It waits until host has capacity for a new resource. An admitted creation must be
+	 * ended by {@code release}, whatever its result.
+	 *
+	 * @return outcome of request, {@code REFUSED} if max wait elapsed or thread was interrupted
+	 */
+	Outcome acquire() {
+
+		final long start = System.nanoTime();
+		boolean waiting = false;
+
+		try {
+			for (;;) {
+				final int current = inFlight.get();
+				final String overload = overload(current);
+
+				if (overload == null) {
+					if (!inFlight.compareAndSet(current, current + 1)) {
+						continue;
+					}
+					refused = false;
+
+					if (!waiting) {
+						return Outcome.ADMITTED;
+					}
+					logger.info(String.format("#### Creation of shareable item admitted by host after %d ms",
+							TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+					return Outcome.DELAYED;
+				}
+
+				final long remaining = maxWaitNanos - (System.nanoTime() - start);
+				if (remaining <= 0L) {
+					refused = true;
+					logger.error(String.format("XXXX Creation of shareable item refused by host -> %s", overload));
+					return Outcome.REFUSED;
+				}
+
+				if (!waiting) {
+					waiting = true;
+					delayed.incrementAndGet();
+					logger.warn(String.format("XXXX Creation of shareable item delayed by host -> %s", overload));
+				}
+
+				try {
+					TimeUnit.NANOSECONDS.sleep(Math.min(remaining, pollIntervalNanos));
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					refused = true;
+					return Outcome.REFUSED;
+				}
+			}
+		} finally {
+			if (waiting) {
+				delayed.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * It ends an admitted creation, created resource is now accounted by OS readings
+	 */
+	void release() {
+		inFlight.decrementAndGet();
+	}
+
+	/**
+	 * It checks host readings against thresholds
+	 *
+	 * @param pending is number of creations admitted and not completed
+	 *
+	 * @return description of exceeded threshold, null if host has capacity
+	 */
+	private String overload(final int pending) {
+
+		if (maxCpuLoad > 0.0) {
+			final double cpu = probe.cpuLoad();
+			if (cpu > maxCpuLoad) {
+				return String.format("CPU load %.2f over %.2f", cpu, maxCpuLoad);
+			}
+		}
+
+		if (maxLoadPerCore > 0.0) {
+			final double load = probe.loadPerCore();
+			if (load > maxLoadPerCore) {
+				return String.format("load average per core %.2f over %.2f", load, maxLoadPerCore);
+			}
+		}
+
+		if (minAvailableMemory > 0L || memoryPerResource > 0L) {
+			final long memory = probe.availableMemory();
+			final long expected = memory - (pending + 1L) * memoryPerResource;
+			if (memory >= 0L && expected < minAvailableMemory) {
+				return String.format("available memory %d MB with %d creations in progress under %d MB",
+						memory >> 20, pending, minAvailableMemory >> 20);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Readings of local host via platform MXBean. Available memory is {@code MemAvailable}
+	 * of {@code /proc/meminfo} on Linux, that counts reclaimable page cache, free physical memory elsewhere.
+	 */
+	static final class SystemProbe implements Probe {
+
+		private static final Path MEMINFO = Paths.get("/proc/meminfo");
+
+		private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public double cpuLoad() {
+			return os instanceof com.sun.management.OperatingSystemMXBean
+					? ((com.sun.management.OperatingSystemMXBean) os).getSystemCpuLoad()
+					: -1.0;
+		}
+
+		@Override
+		public double loadPerCore() {
+			final double load = os.getSystemLoadAverage();
+			return load < 0.0 ? -1.0 : load / os.getAvailableProcessors();
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public long availableMemory() {
+
+			if (Files.isReadable(MEMINFO)) {
+				try {
+					final List<String> lines = Files.readAllLines(MEMINFO, StandardCharsets.US_ASCII);
+					for (final String line : lines) {
+						if (line.startsWith("MemAvailable:")) {
+							return Long.parseLong(line.replaceAll("[^0-9]", "")) << 10;
+						}
+					}
+				} catch (final IOException | NumberFormatException e) {
+					// fall back to JMX
+				}
+			}
+
+			return os instanceof com.sun.management.OperatingSystemMXBean
+					? ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize()
+					: -1L;
+		}
+	}
+
+	/**
+	 * Builder of {@code HostAdmission}
+	 */
+	public static final class Builder {
+
+		private Probe probe = new SystemProbe();
+
+		private double maxCpuLoad = 0.0;
+
+		private double maxLoadPerCore = 0.0;
+
+		private long minAvailableMemory = 0L;
+
+		private long memoryPerResource = 0L;
+
+		private Duration maxWait = Duration.ofSeconds(60);
+
+		private Duration pollInterval = Duration.ofMillis(500);
+
+		private Builder() {
+		}
+
+		/**
+		 * CPU usage of whole host over which creation is delayed
+		 *
+		 * @param load is a value in range (0, 1]
+		 *
+		 * @return this builder
+		 */
+		public Builder maxCpuLoad(final double load) {
+			if (load <= 0.0 || load > 1.0) {
+				throw new IllegalArgumentException("maxCpuLoad must be in range (0, 1]!");
+			}
+			maxCpuLoad = load;
+			return this;
+		}
+
+		/**
+		 * Load average of last minute per core over which creation is delayed.
+		 * It reacts slowly, so it is better suited to long runs than to warm up bursts.
+		 *
+		 * @param load is load per core
+		 *
+		 * @return this builder
+		 */
+		public Builder maxLoadPerCore(final double load) {
+			if (load <= 0.0) {
+				throw new IllegalArgumentException("maxLoadPerCore must be positive!");
+			}
+			maxLoadPerCore = load;
+			return this;
+		}
+
+		/**
+		 * Available memory under which creation is delayed
+		 *
+		 * @param bytes is min available memory
+		 *
+		 * @return this builder
+		 */
+		public Builder minAvailableMemory(final long bytes) {
+			if (bytes <= 0L) {
+				throw new IllegalArgumentException("minAvailableMemory must be positive!");
+			}
+			minAvailableMemory = bytes;
+			return this;
+		}
+
+		/**
+		 * Memory expected to be taken by a new resource. A burst of creations would pass the memory
+		 * check all together, so memory of creations in progress is subtracted from available one.
+		 *
+		 * @param bytes is expected memory of a resource
+		 *
+		 * @return this builder
+		 */
+		public Builder memoryPerResource(final long bytes) {
+			if (bytes < 0L) {
+				throw new IllegalArgumentException("memoryPerResource must not be negative!");
+			}
+			memoryPerResource = bytes;
+			return this;
+		}
+
+		/**
+		 * Max time a creation is delayed before being refused, one minute by default. Only renewal
+		 * threads and warm up wait for it, an arbiter with admission always renews in background.
+		 *
+		 * @param wait is max delay
+		 *
+		 * @return this builder
+		 */
+		public Builder maxWait(final Duration wait) {
+			if (wait.isNegative()) {
+				throw new IllegalArgumentException("maxWait must not be negative!");
+			}
+			maxWait = wait;
+			return this;
+		}
+
+		/**
+		 * Interval of host readings while a creation is delayed
+		 *
+		 * @param interval is the period
+		 *
+		 * @return this builder
+		 */
+		public Builder pollInterval(final Duration interval) {
+			if (interval.isZero() || interval.isNegative()) {
+				throw new IllegalArgumentException("pollInterval must be positive!");
+			}
+			pollInterval = interval;
+			return this;
+		}
+
+		/**
+		 * Source of host readings, used by tests
+		 *
+		 * @param inProbe is the probe
+		 *
+		 * @return this builder
+		 */
+		Builder probe(final Probe inProbe) {
+			probe = inProbe;
+			return this;
+		}
+
+		/**
+		 * It creates the configured host admission
+		 *
+		 * @return a new {@code HostAdmission}
+		 */
+		public HostAdmission build() {
+			return new HostAdmission(this);
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import it.vinmar.ResourceArbiter.CapacityBudget;
+import it.vinmar.ResourceArbiter.Factory;
+
+/**
+ * This class handles a pool of &lt;T&gt; resources for each key, e.g. one pool of browsers
+ * for each {@code WebDriverConf}. Pools are elastic and created on first use of their key,
+ * all of them draw on one global capacity. When capacity is exhausted idle resources of a key
+ * are retired to make room for a starved one.
+ *
+ * @param <K> the type of pool key
+ * @param <T> the type of handled resource
+ */
+public final class KeyedResourceArbiter<K, T> {
+
+	/**
+	 * It creates a factory for each key
+	 */
+	private final Function<? super K, ? extends Factory<T>> factories;
+
+	/**
+	 * It customizes builder of each key pool
+	 */
+	private final BiConsumer<? super K, ResourceArbiter.Builder<T>> poolOptions;
+
+	/**
+	 * Global capacity
+	 */
+	private final int maxTotal;
+
+	/**
+	 * Capacity not yet used by any pool
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * Pool of each key
+	 */
+	private final Map<K, ResourceArbiter<T>> pools = new ConcurrentHashMap<>();
+
+	/**
+	 * It periodically lets starved pools grow into capacity freed meanwhile
+	 */
+	private final ScheduledExecutorService rebalancer;
+
+	/**
+	 * Set by {@code shutdown}, afterwards no pool is created
+	 */
+	private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+	/**
+	 * Constructor used by {@code Builder}
+	 *
+	 * @param builder is the configured builder
+	 */
+	private KeyedResourceArbiter(final Builder<K, T> builder) {
+		factories = builder.factories;
+		poolOptions = builder.poolOptions;
+		maxTotal = builder.maxTotal;
+		permits = new Semaphore(builder.maxTotal);
+
+		rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "keyed-arbiter-rebalance");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		final long period = builder.rebalanceInterval.toNanos();
+		rebalancer.scheduleWithFixedDelay(this::rebalance, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * It creates a builder of keyed arbiter
+	 *
+	 * @param <K> the type of pool key
+	 * @param <T> the type of handled resource
+	 * @param factories creates the {@code Factory} of each key
+	 *
+	 * @return a new {@code Builder}
+	 */
+	public static <K, T> Builder<K, T> builder(final Function<? super K, ? extends Factory<T>> factories) {
+
+		if (factories == null) {
+			throw new IllegalArgumentException("Factory function is mandatory!");
+		}
+
+		return new Builder<>(factories);
+	}
+
+	/**
+	 * This method reserves an instance of key pool without waiting
+	 *
+	 * @param key is pool key
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;
+	 */
+	public Optional<T> reserve(final K key) {
+		return pool(key).reserve();
+	}
+
+	/**
+	 * This method reserves an instance of key pool, waiting up to {@code timeout}
+	 * while a resource is created or freed
+	 *
+	 * @param key is pool key
+	 * @param timeout is max time to wait
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;, empty if timeout elapsed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public Optional<T> reserve(final K key, final Duration timeout) throws InterruptedException {
+		return pool(key).reserve(timeout);
+	}
+
+	/**
+	 * This method reserves an instance of key pool without blocking caller, returned future
+	 * is completed as soon as a resource is created or freed
+	 *
+	 * @param key is pool key
+	 *
+	 * @return a {@code CompletableFuture} of &lt;T&gt;
+	 */
+	public CompletableFuture<T> reserveAsync(final K key) {
+		return pool(key).reserveAsync();
+	}
+
+	/**
+	 * This method frees a resource booked from key pool
+	 *
+	 * @param key is pool key
+	 * @param item is booked object to be free
+	 */
+	public void free(final K key, final T item) {
+
+		final ResourceArbiter<T> pool = pools.get(key);
+
+		if (pool != null) {
+			pool.free(item);
+		}
+	}
+
+	/**
+	 * It returns pool of a key, creating it on first use
+	 *
+	 * @param key is pool key
+	 *
+	 * @return the pool
+	 */
+	public ResourceArbiter<T> pool(final K key) {
+		return pools.computeIfAbsent(key, this::createPool);
+	}
+
+	/**
+	 * It shuts down keyed arbiter: rebalance stops, no pool is created and every pool is shut down
+	 * via {@code ResourceArbiter.shutdown}. Pools share {@code grace}, each one waits only for
+	 * the time left by the previous ones.
+	 *
+	 * @param grace is max time to wait for reserved resources
+	 *
+	 * @return a {@code ShutdownReport} summing reports of every pool
+	 *
+	 * @throws IllegalStateException if keyed arbiter is already shut down
+	 */
+	public ShutdownReport<T> shutdown(final Duration grace) {
+
+		final long start = System.nanoTime();
+
+		if (!shutdown.compareAndSet(false, true)) {
+			throw new IllegalStateException("Keyed arbiter is already shut down!");
+		}
+
+		rebalancer.shutdownNow();
+
+		final long deadline = start + Math.max(0L, grace.toNanos());
+
+		int closed = 0;
+		int cancelledWaiters = 0;
+		final List<T> forced = new ArrayList<>();
+
+		// a pool may be created by a reservation racing with shutdown
+		while (!pools.isEmpty()) {
+			for (final K key : pools.keySet()) {
+
+				final ResourceArbiter<T> pool = pools.remove(key);
+				if (pool == null) {
+					continue;
+				}
+
+				final ShutdownReport<T> report = pool.shutdown(Duration.ofNanos(Math.max(0L, deadline - System.nanoTime())));
+				closed += report.getClosed();
+				cancelledWaiters += report.getCancelledWaiters();
+				forced.addAll(report.getForceClosed());
+			}
+		}
+
+		return new ShutdownReport<>(closed, forced, cancelledWaiters, Duration.ofNanos(System.nanoTime() - start));
+	}
+
+	/**
+	 * @return global capacity
+	 */
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * @return capacity not used by any pool
+	 */
+	public int getAvailable() {
+		return permits.availablePermits();
+	}
+
+	private ResourceArbiter<T> createPool(final K key) {
+
+		if (shutdown.get()) {
+			throw new IllegalStateException("Keyed arbiter is shut down!");
+		}
+
+		final ResourceArbiter.Builder<T> builder = ResourceArbiter.builder(factories.apply(key));
+		poolOptions.accept(key, builder);
+
+		return builder
+				.size(0)
+				.minIdle(0)
+				.spares(0)
+				.maxTotal(maxTotal)
+				.budget(new KeyBudget(key))
+				.build();
+	}
+
+	/**
+	 * It takes capacity for a key pool, retiring an idle resource of another key if none is left
+	 *
+	 * @param key is key of growing pool
+	 *
+	 * @return true if capacity was taken
+	 */
+	private boolean acquire(final K key) {
+
+		if (permits.tryAcquire()) {
+			return true;
+		}
+
+		// capacity of retired resource is handed over without passing through semaphore
+		for (final Map.Entry<K, ResourceArbiter<T>> entry : pools.entrySet()) {
+			if (!entry.getKey().equals(key) && entry.getValue().retireIdle()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * It lets pools with waiters grow into capacity freed after their reservation missed
+	 */
+	private void rebalance() {
+		pools.values().forEach(ResourceArbiter::grow);
+	}
+
+	/**
+	 * Budget view of a single key
+	 */
+	private final class KeyBudget implements CapacityBudget {
+
+		private final K key;
+
+		KeyBudget(final K inKey) {
+			key = inKey;
+		}
+
+		@Override
+		public boolean tryAcquire() {
+			return acquire(key);
+		}
+
+		@Override
+		public void release() {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Builder of {@code KeyedResourceArbiter}
+	 *
+	 * @param <K> the type of pool key
+	 * @param <T> the type of handled resource
+	 */
+	public static final class Builder<K, T> {
+
+		private final Function<? super K, ? extends Factory<T>> factories;
+
+		private BiConsumer<? super K, ResourceArbiter.Builder<T>> poolOptions = (key, builder) -> { };
+
+		private int maxTotal = 1;
+
+		private Duration rebalanceInterval = Duration.ofMillis(100);
+
+		private Builder(final Function<? super K, ? extends Factory<T>> inFactories) {
+			factories = inFactories;
+		}
+
+		/**
+		 * Max number of resources of all pools together
+		 *
+		 * @param nrTotal is global capacity
+		 *
+		 * @return this builder
+		 */
+		public Builder<K, T> maxTotal(final int nrTotal) {
+			if (nrTotal < 1) {
+				throw new IllegalArgumentException("maxTotal must be positive!");
+			}
+			maxTotal = nrTotal;
+			return this;
+		}
+
+		/**
+		 * It customizes each key pool, e.g. max iterations or validation.
+		 * Pool size, min idle, spares and max total are set by keyed arbiter.
+		 *
+		 * @param options receives pool key and its builder
+		 *
+		 * @return this builder
+		 */
+		public Builder<K, T> poolOptions(final BiConsumer<? super K, ResourceArbiter.Builder<T>> options) {
+			poolOptions = options;
+			return this;
+		}
+
+		/**
+		 * Period of check of starved pools, capacity freed meanwhile is given to them
+		 *
+		 * @param interval is the period
+		 *
+		 * @return this builder
+		 */
+		public Builder<K, T> rebalanceInterval(final Duration interval) {
+			if (interval.isZero() || interval.isNegative()) {
+				throw new IllegalArgumentException("rebalanceInterval must be positive!");
+			}
+			rebalanceInterval = interval;
+			return this;
+		}
+
+		/**
+		 * It creates the configured keyed arbiter, pools are created on first use of their key
+		 *
+		 * @return a new {@code KeyedResourceArbiter}
+		 */
+		public KeyedResourceArbiter<K, T> build() {
+			return new KeyedResourceArbiter<>(this);
+		}
+	}
+}
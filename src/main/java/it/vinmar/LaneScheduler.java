@@ -0,0 +1,371 @@
+package it.vinmar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntSupplier;
+
+/**
+ * Waiting side of a {@code ResourceArbiter}. Waiters of a lane are served in arrival order,
+ * lanes below their reserved capacity come first and the others share resources according to their weight.
+ *
+ * @param <T> the type of handled resource
+ */
+final class LaneScheduler<T> {
+
+	/**
+	 * Virtual time advance of a lane with weight one for each served waiter
+	 */
+	private static final long STRIDE = 1L << 20;
+
+	/**
+	 * Priority lanes, a single lane with weight one when none is configured
+	 */
+	private final List<Lane<T>> lanes;
+
+	/**
+	 * At least a lane has a reserved capacity
+	 */
+	private final boolean reservations;
+
+	/**
+	 * Lane holding each busy slot, -1 when slot is not held
+	 */
+	private final AtomicIntegerArray slotLanes;
+
+	/**
+	 * Number of idle resources of arbiter
+	 */
+	private final IntSupplier idleCount;
+
+	/**
+	 * Virtual time of last served waiter, an inactive lane restarts from it
+	 */
+	private volatile long virtualTime = 0L;
+
+	/**
+	 * Number of queued waiters
+	 */
+	private final AtomicInteger nrWaiters = new AtomicInteger(0);
+
+	/**
+	 * @param config is weight and reserved capacity of each lane
+	 * @param capacity is number of slots of arbiter
+	 * @param inIdleCount gives number of idle resources, used only when a lane has reserved capacity
+	 */
+	LaneScheduler(final List<int[]> config, final int capacity, final IntSupplier inIdleCount) {
+
+		final List<Lane<T>> laneList = new ArrayList<>();
+		config.forEach(lane -> laneList.add(new Lane<>(lane[0], lane[1])));
+		if (laneList.isEmpty()) {
+			laneList.add(new Lane<>(1, 0));
+		}
+		lanes = laneList;
+		reservations = laneList.stream().anyMatch(lane -> lane.reserved > 0);
+
+		slotLanes = new AtomicIntegerArray(capacity);
+		for (int index = 0; index < capacity; index++) {
+			slotLanes.set(index, -1);
+		}
+
+		idleCount = inIdleCount;
+	}
+
+	/**
+	 * @return true if at least a lane has a reserved capacity
+	 */
+	boolean hasReservations() {
+		return reservations;
+	}
+
+	/**
+	 * @return number of queued waiters
+	 */
+	int waiterCount() {
+		return nrWaiters.get();
+	}
+
+	/**
+	 * @param lane is lane index
+	 *
+	 * @return lane index if configured
+	 */
+	int checkLane(final int lane) {
+		if (lane < 0 || lane >= lanes.size()) {
+			throw new IllegalArgumentException(String.format("Lane %d is not configured!", lane));
+		}
+		return lane;
+	}
+
+	/**
+	 * It checks if a lane can take one more resource without eating capacity reserved to other lanes
+	 *
+	 * @param lane is lane index
+	 * @param pending is number of idle resources not yet claimed by caller
+	 *
+	 * @return true if lane can be served
+	 */
+	boolean mayServe(final int lane, final int pending) {
+
+		if (!reservations) {
+			return true;
+		}
+
+		final Lane<T> target = lanes.get(lane);
+
+		return target.inUse.get() < target.reserved || idleCount.getAsInt() - pending >= shortfall(lane);
+	}
+
+	/**
+	 * It sums reserved capacity not in use
+	 *
+	 * @param excluded is lane not to be counted, -1 to count every lane
+	 *
+	 * @return number of resources to be kept for lanes below their reserved capacity
+	 */
+	int shortfall(final int excluded) {
+
+		if (!reservations) {
+			return 0;
+		}
+
+		int resp = 0;
+		for (int index = 0; index < lanes.size(); index++) {
+			if (index != excluded) {
+				final Lane<T> lane = lanes.get(index);
+				resp += Math.max(0, lane.reserved - lane.inUse.get());
+			}
+		}
+
+		return resp;
+	}
+
+	/**
+	 * It records slot as held by a lane. Lane usage only matters to reserved capacity.
+	 *
+	 * @param slot is slot index
+	 * @param lane is lane index
+	 */
+	void occupy(final int slot, final int lane) {
+		if (reservations) {
+			slotLanes.set(slot, lane);
+			lanes.get(lane).inUse.incrementAndGet();
+		}
+	}
+
+	/**
+	 * It records slot as no more held by its lane, if any
+	 *
+	 * @param slot is slot index
+	 */
+	void vacate(final int slot) {
+
+		if (!reservations) {
+			return;
+		}
+
+		final int lane = slotLanes.getAndSet(slot, -1);
+
+		if (lane >= 0) {
+			lanes.get(lane).inUse.decrementAndGet();
+		}
+	}
+
+	/**
+	 * It checks if a reservation without wait must leave idle resources to queued waiters.
+	 * Waiters that cannot take an idle resource, because it is kept for reserved capacity,
+	 * don't stop others; a lane below its reserved capacity only gives way to its own waiters.
+	 *
+	 * @param lane is lane of reservation
+	 *
+	 * @return true if a queued waiter comes first
+	 */
+	boolean waitersFirst(final int lane) {
+
+		// counted before being queued, so zero means no waiter
+		if (nrWaiters.get() == 0) {
+			return false;
+		}
+
+		final Lane<T> target = lanes.get(lane);
+		if (target.inUse.get() < target.reserved) {
+			return !target.waiters.isEmpty();
+		}
+
+		// the idle resource the caller would take is not claimed yet
+		return nextLane(1) >= 0;
+	}
+
+	/**
+	 * It selects lane to be served next. Lanes below their reserved capacity come first,
+	 * others share resources according to their weight.
+	 *
+	 * @param pending is number of idle resources not yet claimed by caller
+	 *
+	 * @return lane index or -1 if no waiter can be served
+	 */
+	int nextLane(final int pending) {
+
+		if (lanes.size() == 1) {
+			return lanes.get(0).waiters.isEmpty() ? -1 : 0;
+		}
+
+		final long now = virtualTime;
+
+		int resp = -1;
+		long best = Long.MAX_VALUE;
+
+		for (int index = 0; index < lanes.size(); index++) {
+
+			final Lane<T> lane = lanes.get(index);
+
+			if (lane.waiters.isEmpty() || !mayServe(index, pending)) {
+				continue;
+			}
+			if (lane.inUse.get() < lane.reserved) {
+				return index;
+			}
+
+			final long pass = Math.max(lane.pass, now);
+			if (pass < best) {
+				best = pass;
+				resp = index;
+			}
+		}
+
+		return resp;
+	}
+
+	/**
+	 * It advances virtual time of a lane that has just been served
+	 *
+	 * @param index is lane index
+	 */
+	void charge(final int index) {
+
+		final Lane<T> lane = lanes.get(index);
+		final long pass = Math.max(lane.pass, virtualTime);
+
+		// races only skew fairness a little
+		virtualTime = pass;
+		lane.pass = pass + lane.stride;
+	}
+
+	/**
+	 * It appends a new waiter to the queue of its lane
+	 *
+	 * @param lane is lane of reservation
+	 *
+	 * @return the waiter
+	 */
+	CompletableFuture<T> enqueue(final int lane) {
+
+		final CompletableFuture<T> waiter = new CompletableFuture<>();
+		nrWaiters.incrementAndGet();
+		lanes.get(lane).waiters.add(waiter);
+
+		return waiter;
+	}
+
+	/**
+	 * It takes first waiter of a lane out of its queue
+	 *
+	 * @param lane is lane index
+	 *
+	 * @return the waiter or null if queue is empty
+	 */
+	CompletableFuture<T> poll(final int lane) {
+
+		final CompletableFuture<T> waiter = lanes.get(lane).waiters.poll();
+		if (waiter != null) {
+			nrWaiters.decrementAndGet();
+		}
+
+		return waiter;
+	}
+
+	/**
+	 * It fails every queued waiter
+	 *
+	 * @return number of waiters failed
+	 */
+	int failWaiters() {
+
+		int count = 0;
+
+		for (int index = 0; index < lanes.size(); index++) {
+			CompletableFuture<T> waiter;
+			while ((waiter = poll(index)) != null) {
+				if (waiter.completeExceptionally(new IllegalStateException("Arbiter is shut down!"))) {
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * It cancels a waiter not yet served and removes it from the queue
+	 *
+	 * @param waiter is the waiter to be removed, may be null
+	 *
+	 * @return true if waiter was cancelled before being served
+	 */
+	boolean dropWaiter(final CompletableFuture<T> waiter) {
+
+		if (waiter == null || !waiter.cancel(false)) {
+			return false;
+		}
+
+		for (int index = 0; index < lanes.size(); index++) {
+			if (lanes.get(index).waiters.remove(waiter)) {
+				nrWaiters.decrementAndGet();
+				break;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Waiting side of a priority lane
+	 *
+	 * @param <T> the type of handled resource
+	 */
+	private static final class Lane<T> {
+
+		/**
+		 * Waiters of lane, served in arrival order
+		 */
+		private final ConcurrentLinkedQueue<CompletableFuture<T>> waiters = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Virtual time advance for each served waiter, inverse of lane weight
+		 */
+		private final long stride;
+
+		/**
+		 * Number of resources kept for lane
+		 */
+		private final int reserved;
+
+		/**
+		 * Number of resources held by lane
+		 */
+		private final AtomicInteger inUse = new AtomicInteger(0);
+
+		/**
+		 * Virtual time of lane, lane with lowest one is served next
+		 */
+		private volatile long pass = 0L;
+
+		Lane(final int weight, final int inReserved) {
+			stride = STRIDE / weight;
+			reserved = inReserved;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package it.vinmar;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two microsecond buckets.
+ * Recording is a few striped additions, so it can stay on reserve/free hot path.
+ */
+final class LatencyHistogram {
+
+	/**
+	 * Bucket 0 holds values under 1 us, bucket i values in [2^(i-1), 2^i) us, last one everything above
+	 */
+	private static final int BUCKETS = 40;
+
+	private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sumNanos = new LongAdder();
+
+	private final AtomicLong maxNanos = new AtomicLong(0L);
+
+	LatencyHistogram() {
+		for (int index = 0; index < BUCKETS; index++) {
+			counts[index] = new LongAdder();
+		}
+	}
+
+	/**
+	 * It records a latency
+	 *
+	 * @param nanos is latency in nanoseconds
+	 */
+	void record(final long nanos) {
+
+		final long value = Math.max(0L, nanos);
+		final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value / 1_000L));
+
+		counts[bucket].increment();
+		count.increment();
+		sumNanos.add(value);
+
+		long max;
+		while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * It summarizes recorded latencies. Percentiles are upper bound of their bucket.
+	 *
+	 * @return a {@code LatencySummary}
+	 */
+	LatencySummary summary() {
+
+		final long[] snapshot = new long[BUCKETS];
+		long total = 0L;
+		for (int index = 0; index < BUCKETS; index++) {
+			snapshot[index] = counts[index].sum();
+			total += snapshot[index];
+		}
+
+		final long max = maxNanos.get();
+		final double mean = total == 0L ? 0.0 : sumNanos.sum() / (double) total;
+
+		return new LatencySummary(
+				total,
+				toMillis(mean),
+				toMillis(percentile(snapshot, total, 0.50, max)),
+				toMillis(percentile(snapshot, total, 0.90, max)),
+				toMillis(percentile(snapshot, total, 0.99, max)),
+				toMillis(max));
+	}
+
+	private static double percentile(final long[] snapshot, final long total, final double rank, final long max) {
+
+		if (total == 0L) {
+			return 0.0;
+		}
+
+		final long threshold = (long) Math.ceil(total * rank);
+		long cumulated = 0L;
+		for (int index = 0; index < BUCKETS; index++) {
+			cumulated += snapshot[index];
+			if (cumulated >= threshold) {
+				final double upperBound = index == 0 ? 1_000.0 : (1L << index) * 1_000.0;
+				return Math.min(upperBound, max);
+			}
+		}
+
+		return max;
+	}
+
+	private static double toMillis(final double nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
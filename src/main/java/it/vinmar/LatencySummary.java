@@ -0,0 +1,77 @@
+package it.vinmar;
+
+/**
+ * Immutable summary of a latency distribution, values are in milliseconds
+ */
+public final class LatencySummary {
+
+	private final long count;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p90Millis;
+	private final double p99Millis;
+	private final double maxMillis;
+
+	LatencySummary(
+			final long inCount,
+			final double inMeanMillis,
+			final double inP50Millis,
+			final double inP90Millis,
+			final double inP99Millis,
+			final double inMaxMillis) {
+		count = inCount;
+		meanMillis = inMeanMillis;
+		p50Millis = inP50Millis;
+		p90Millis = inP90Millis;
+		p99Millis = inP99Millis;
+		maxMillis = inMaxMillis;
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return mean value
+	 */
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	/**
+	 * @return median value
+	 */
+	public double getP50Millis() {
+		return p50Millis;
+	}
+
+	/**
+	 * @return 90th percentile
+	 */
+	public double getP90Millis() {
+		return p90Millis;
+	}
+
+	/**
+	 * @return 99th percentile
+	 */
+	public double getP99Millis() {
+		return p99Millis;
+	}
+
+	/**
+	 * @return max value
+	 */
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+				count, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+	}
+}
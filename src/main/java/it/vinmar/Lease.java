@@ -0,0 +1,138 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This object is a reservation of a {@code ResourceArbiter} resource, to be used
+ * into try-with-resources so resource is freed even if script doesn't reach its end.
+ * A lease held beyond max hold time of its arbiter is reclaimed by reaper,
+ * after that closing it has no effect.
+ *
+ * @param <T> the type of leased resource
+ */
+public final class Lease<T> implements AutoCloseable {
+
+	private final ResourceArbiter<T> arbiter;
+
+	private final T item;
+
+	private final Thread owner;
+
+	private final Instant acquiredAt;
+
+	private final long acquiredNanos;
+
+	/**
+	 * Call stack of reservation, null when not recorded
+	 */
+	private final Throwable acquisitionTrace;
+
+	/**
+	 * Lease is closed by owner or reclaimed
+	 */
+	private final AtomicBoolean ended = new AtomicBoolean(false);
+
+	private volatile boolean reclaimed = false;
+
+	/**
+	 * Lease constructor, used by {@code ResourceArbiter}
+	 *
+	 * @param inArbiter is arbiter of resource
+	 * @param inItem is leased resource
+	 * @param recordTrace is true to keep call stack of reservation
+	 */
+	Lease(final ResourceArbiter<T> inArbiter, final T inItem, final boolean recordTrace) {
+		arbiter = inArbiter;
+		item = inItem;
+		owner = Thread.currentThread();
+		acquiredAt = Instant.now();
+		acquiredNanos = System.nanoTime();
+		acquisitionTrace = recordTrace ? new Throwable("Lease acquired by " + owner.getName()) : null;
+	}
+
+	/**
+	 * @return leased resource
+	 */
+	public T get() {
+		return item;
+	}
+
+	/**
+	 * @return thread that reserved resource
+	 */
+	public Thread getOwner() {
+		return owner;
+	}
+
+	/**
+	 * @return time of reservation
+	 */
+	public Instant getAcquiredAt() {
+		return acquiredAt;
+	}
+
+	/**
+	 * @return time elapsed since reservation
+	 */
+	public Duration getHeldFor() {
+		return Duration.ofNanos(System.nanoTime() - acquiredNanos);
+	}
+
+	/**
+	 * Call stack of reservation, recorded only if enabled on arbiter
+	 *
+	 * @return an {@code Optional} of stack trace
+	 */
+	public Optional<StackTraceElement[]> getAcquisitionTrace() {
+		return Optional.ofNullable(acquisitionTrace).map(Throwable::getStackTrace);
+	}
+
+	/**
+	 * @return true if lease was taken back by reaper
+	 */
+	public boolean isReclaimed() {
+		return reclaimed;
+	}
+
+	/**
+	 * It frees leased resource, only first call has effect
+	 */
+	@Override
+	public void close() {
+		if (ended.compareAndSet(false, true)) {
+			arbiter.free(item);
+		}
+	}
+
+	/**
+	 * It ends lease on behalf of reaper
+	 *
+	 * @return false if lease was already closed
+	 */
+	boolean reclaim() {
+
+		if (!ended.compareAndSet(false, true)) {
+			return false;
+		}
+
+		reclaimed = true;
+		return true;
+	}
+
+	long getAcquiredNanos() {
+		return acquiredNanos;
+	}
+
+	Throwable getTrace() {
+		return acquisitionTrace;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("lease of %s by %s for %d ms", item, owner.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acquiredNanos));
+	}
+}
@@ -0,0 +1,139 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Open leases of a {@code ResourceArbiter}, one for each busy slot. Leases held longer
+ * than max hold time are reclaimed, so a forgotten resource does not leave the pool for good.
+ *
+ * @param <T> the type of handled resource
+ */
+final class LeaseReaper<T> {
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = LoggerFactory.getLogger("root");
+
+	/**
+	 * Open lease of each busy slot, null when slot is not leased
+	 */
+	private final AtomicReferenceArray<Lease<T>> leases;
+
+	/**
+	 * Leases held longer are reclaimed, zero when leases never expire
+	 */
+	private final long maxHoldNanos;
+
+	/**
+	 * Leases record call stack of reservation
+	 */
+	private final boolean stackTraces;
+
+	/**
+	 * Counter of reclaimed leases
+	 */
+	private final ArbiterMetrics metrics;
+
+	/**
+	 * @param capacity is number of slots of arbiter
+	 * @param maxHoldTime is max time a lease is held, zero when leases never expire
+	 * @param inStackTraces is true to record call stack of reservation
+	 * @param inMetrics is instrumentation of arbiter
+	 */
+	LeaseReaper(final int capacity, final Duration maxHoldTime, final boolean inStackTraces, final ArbiterMetrics inMetrics) {
+		leases = new AtomicReferenceArray<>(capacity);
+		maxHoldNanos = maxHoldTime.toNanos();
+		stackTraces = inStackTraces;
+		metrics = inMetrics;
+	}
+
+	/**
+	 * @return true if leases expire
+	 */
+	boolean isEnabled() {
+		return maxHoldNanos > 0L;
+	}
+
+	/**
+	 * @return interval of checks of open leases, in nanoseconds
+	 */
+	long period() {
+		return Math.max(maxHoldNanos / 4L, TimeUnit.MILLISECONDS.toNanos(10L));
+	}
+
+	/**
+	 * It tracks a just reserved resource as leased by current thread
+	 *
+	 * @param arbiter is arbiter freeing the resource when lease is closed
+	 * @param slot is slot index
+	 * @param item is reserved resource
+	 *
+	 * @return the lease
+	 */
+	Lease<T> open(final ResourceArbiter<T> arbiter, final int slot, final T item) {
+
+		final Lease<T> resp = new Lease<>(arbiter, item, stackTraces);
+		leases.set(slot, resp);
+
+		return resp;
+	}
+
+	/**
+	 * It forgets lease of a slot, if any
+	 *
+	 * @param slot is slot index
+	 */
+	void close(final int slot) {
+		leases.set(slot, null);
+	}
+
+	/**
+	 * It takes lease of a slot away, e.g. to report it on force close
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return the lease or null if slot was not leased
+	 */
+	Lease<T> take(final int slot) {
+		return leases.getAndSet(slot, null);
+	}
+
+	/**
+	 * It reclaims leases held beyond max hold time. Since owner may still be using
+	 * its resource, resource is renewed rather than given to another caller.
+	 *
+	 * @param take takes ownership of slot of a reclaimed lease, returning false if it was freed meanwhile
+	 * @param renew renews resource of a slot taken back
+	 */
+	void reap(final IntPredicate take, final IntConsumer renew) {
+
+		final long now = System.nanoTime();
+
+		for (int slot = 0; slot < leases.length(); slot++) {
+
+			final Lease<T> lease = leases.get(slot);
+
+			if (lease == null || now - lease.getAcquiredNanos() < maxHoldNanos
+					|| !leases.compareAndSet(slot, lease, null) || !lease.reclaim()) {
+				continue;
+			}
+
+			if (!take.test(slot)) {
+				continue;
+			}
+
+			metrics.reclaimedLeases.increment();
+			logger.warn(String.format("XXXX Reclaimed %s", lease), lease.getTrace());
+
+			renew.accept(slot);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package it.vinmar;
+
+import java.time.Duration;
+
+/**
+ * Retirement criterion of a pooled resource. It is asked by {@code ResourceArbiter}
+ * each time a resource is freed, a positive answer makes the arbiter renew the resource.
+ *
+ * @param <T> is handled resource type
+ */
+@FunctionalInterface
+public interface RecyclePolicy<T> {
+
+	/**
+	 * It decides if a just freed resource must be retired
+	 *
+	 * @param resource is the freed resource
+	 * @param uses is number of reservations served by resource since its creation
+	 * @param age is time elapsed since resource creation
+	 *
+	 * @return true if resource must be substituted
+	 */
+	boolean shouldRecycle(T resource, long uses, Duration age);
+
+	/**
+	 * It is notified when a resource leaves the pool, so any state kept about it can be dropped
+	 *
+	 * @param resource is the retired resource
+	 */
+	default void forget(final T resource) {
+		// stateless by default
+	}
+
+	/**
+	 * It combines two policies, resource is retired as soon as one of them asks for it
+	 *
+	 * @param other is the other policy
+	 *
+	 * @return combined policy
+	 */
+	default RecyclePolicy<T> or(final RecyclePolicy<? super T> other) {
+
+		final RecyclePolicy<T> self = this;
+
+		return new RecyclePolicy<T>() {
+
+			@Override
+			public boolean shouldRecycle(final T resource, final long uses, final Duration age) {
+				return self.shouldRecycle(resource, uses, age) || other.shouldRecycle(resource, uses, age);
+			}
+
+			@Override
+			public void forget(final T resource) {
+				self.forget(resource);
+				other.forget(resource);
+			}
+		};
+	}
+
+	/**
+	 * Policy retiring resources after a fixed number of reservations
+	 *
+	 * @param <T> is handled resource type
+	 * @param maxUses is number of reservations each resource serves
+	 *
+	 * @return the policy
+	 */
+	static <T> RecyclePolicy<T> maxUses(final long maxUses) {
+
+		if (maxUses <= 0L) {
+			throw new IllegalArgumentException("maxUses must be positive!");
+		}
+
+		return (resource, uses, age) -> uses >= maxUses;
+	}
+
+	/**
+	 * Policy retiring resources older than a wall-clock age
+	 *
+	 * @param <T> is handled resource type
+	 * @param maxAge is max lifetime of each resource
+	 *
+	 * @return the policy
+	 */
+	static <T> RecyclePolicy<T> maxAge(final Duration maxAge) {
+
+		if (maxAge.isZero() || maxAge.isNegative()) {
+			throw new IllegalArgumentException("maxAge must be positive!");
+		}
+
+		return (resource, uses, age) -> age.compareTo(maxAge) >= 0;
+	}
+}
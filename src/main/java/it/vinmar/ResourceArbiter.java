@@ -1,18 +1,42 @@
 package it.vinmar;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class handles a pool of resource object that can be booked by multiple thread.
+ * Each resource lives into a slot; slot state and ageing are primitive atomic arrays and
+ * idle slots are kept into a lock-free stack, so reserve and free are O(1) and lock free.
  *
  * @param <T> the type of handled resource
  */
@@ -38,27 +62,240 @@ public final class ResourceArbiter<T> {
 		 * @param resource is resource object to be destroyed
 		 */
 		void closeResource(T resource);
+
+		/**
+		 * Cheap check that a resource is still usable, e.g. browser session is alive.
+		 * Default implementation considers every resource valid.
+		 *
+		 * @param resource is resource object to be checked
+		 *
+		 * @return true if resource can be used
+		 */
+		default boolean validate(T resource) {
+			return true;
+		}
+
+		/**
+		 * It cleans state left by a user before resource goes back into pool,
+		 * it is cheaper than a renewal. It is called by thread that frees the resource.
+		 * Default implementation does nothing. A resource not cleaned is renewed in background
+		 * by renewal threads, if any, otherwise by thread that frees it; a renewal failing on that
+		 * thread is only logged and the slot leaves the pool.
+		 *
+		 * @param resource is resource object just freed
+		 *
+		 * @return false if resource cannot be cleaned and must be renewed
+		 */
+		default boolean reset(T resource) {
+			return true;
+		}
+	}
+
+	/**
+	 * Listener of pool warm up progress
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+
+		/**
+		 * It is called each time a pool resource is created or left to background retry
+		 *
+		 * @param ready is number of resources ready so far
+		 * @param failed is number of resources still missing after all attempts, retried in background
+		 * @param total is number of resources to be created
+		 */
+		void onProgress(int ready, int failed, int total);
+	}
+
+	/**
+	 * Capacity shared among elastic pools, each growth takes a permit and each shrink gives it back
+	 */
+	interface CapacityBudget {
+
+		/**
+		 * @return true if a new resource can be created
+		 */
+		boolean tryAcquire();
+
+		/**
+		 * It gives back capacity of a closed resource
+		 */
+		void release();
 	}
 
+	/**
+	 * Slot contains a resource ready to be reserved
+	 */
+	private static final int IDLE = 0;
+
+	/**
+	 * Slot contains a reserved resource
+	 */
+	private static final int BUSY = 1;
+
+	/**
+	 * Slot resource is being given back by {@code free}
+	 */
+	private static final int RELEASING = 2;
+
+	/**
+	 * Slot is out of service while its resource is re-created in background
+	 */
+	private static final int RENEWING = 3;
+
+	/**
+	 * Slot holds no resource and is available for pool growth
+	 */
+	private static final int VACANT = 4;
+
+	/**
+	 * Idle slot whose resource is being retired by idle shrink
+	 */
+	private static final int EVICTING = 5;
+
+	/**
+	 * Delay before retrying a failed background creation
+	 */
+	static final long RETRY_DELAY_SECONDS = 1L;
+
+	/**
+	 * Distance between idle counters of two shards, so they don't share a cache line
+	 */
+	private static final int COUNTER_SPACING = 16;
+
+	/**
+	 * Max number of resources closed at same time during shutdown
+	 */
+	private static final int CLOSE_CONCURRENCY = 16;
+
+	/**
+	 * Max time to wait for closing of resources during shutdown
+	 */
+	private static final long CLOSE_TIMEOUT_SECONDS = 60L;
+
+	/**
+	 * Interval of checks of reserved resources during shutdown grace period
+	 */
+	private static final long SHUTDOWN_POLL_MILLIS = 10L;
+
+	/**
+	 * Lane of reservations not asking for a specific one
+	 */
+	public static final int DEFAULT_LANE = 0;
+
 	/**
 	 * Logger
 	 */
 	private final Logger logger = LoggerFactory.getLogger("root");
 
 	/**
-	 * It resolve concurrent resource requests
+	 * Resource held by each slot
+	 */
+	private final AtomicReferenceArray<T> items;
+
+	/**
+	 * It tracks slot statuses
+	 */
+	private final AtomicIntegerArray states;
+
+	/**
+	 * It tracks ageing of each slot resource
+	 */
+	private final AtomicIntegerArray usageCounter;
+
+	/**
+	 * Number of iterations each slot resource was given at creation
+	 */
+	private final AtomicIntegerArray lifetimes;
+
+	/**
+	 * It maps each resource to its slot
+	 */
+	private final Map<T, Integer> slots;
+
+	/**
+	 * Slots ready to be reserved, split into shards so concurrent threads update different stack heads.
+	 * Slot {@code n} always goes into shard {@code n % shards}. An entry is only a hint, slot state is
+	 * checked when popped because an idle slot can also be taken directly by affinity or idle shrink.
+	 */
+	private final SlotStack[] idle;
+
+	/**
+	 * It tracks which slots have an entry into idle stack, so a slot is never pushed twice
+	 */
+	private final AtomicIntegerArray stacked;
+
+	/**
+	 * It maps each affinity key to the slot that served it last time
+	 */
+	private final Map<Object, Integer> affinity = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of resources ready to be reserved, one counter for each shard of idle stack.
+	 * Counters are summed only by elastic sizing and reserved capacity, the only ones needing them.
+	 */
+	private final AtomicIntegerArray idleCounts;
+
+	/**
+	 * Idle resources are counted
+	 */
+	private final boolean countIdle;
+
+	/**
+	 * Slots without resource, used to grow elastic pool
+	 */
+	private final SlotStack vacant;
+
+	/**
+	 * It tracks when each slot was made available last time
+	 */
+	private final AtomicLongArray lastReleased;
+
+	/**
+	 * It tracks when each slot was reserved last time
+	 */
+	private final AtomicLongArray reservedAt;
+
+	/**
+	 * It tracks when each slot resource was created
+	 */
+	private final AtomicLongArray createdAt;
+
+	/**
+	 * Open leases and their reclaim after max hold time
+	 */
+	private final LeaseReaper<T> leaseReaper;
+
+	/**
+	 * Admission control of creations based on host capacity, null if not enabled
 	 */
-	private final ReentrantLock lock = new ReentrantLock();
+	private final HostAdmission hostAdmission;
 
 	/**
-	 * It tracks resource statuses
+	 * Pool instrumentation
 	 */
-	private Map<T, Boolean> resources = null;
+	private final ArbiterMetrics metrics = new ArbiterMetrics();
 
 	/**
-	 * It tracks ageing of each resource
+	 * Name of registered MBean, null if not registered
 	 */
-	private Map<T, Integer> usageCounter = null;
+	private final ObjectName objectName;
+
+	/**
+	 * Priority lanes of waiting side. Waiters of a lane are served in arrival order,
+	 * a freed resource is handed directly to a waiter and never marked available.
+	 */
+	private final LaneScheduler<T> scheduler;
+
+	/**
+	 * Set by {@code shutdown}, afterwards no reservation is accepted and no resource is created
+	 */
+	private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+	/**
+	 * Number of resources closed since shutdown began
+	 */
+	private final AtomicInteger closedOnShutdown = new AtomicInteger(0);
 
 	/**
 	 * Simple constructor, it takes as input list of handled resources.
@@ -66,17 +303,7 @@ public final class ResourceArbiter<T> {
 	 * @param items is a list of handled resources generated externally
 	 */
 	public ResourceArbiter(final List<T> items) {
-
-		resources = items
-						.stream()
-						.collect(
-								Collectors.<T, T, Boolean, HashMap<T, Boolean>>toMap(
-										t -> t,
-										t -> Boolean.TRUE,
-										(a, b) -> Boolean.TRUE,
-										() -> new HashMap<>(items.size()))
-								);
-		factory = null; // null will disable re-new feature
+		this(new Builder<>(null), new ArrayList<>(new LinkedHashSet<>(items)));
 	}
 
 	/**
@@ -87,7 +314,37 @@ public final class ResourceArbiter<T> {
 	/**
 	 * It's instance max number of iterations for each resource
 	 */
-	private Integer maxIterations = Integer.MAX_VALUE;
+	private final int maxIterations;
+
+	/**
+	 * Max relative deviation of each resource lifetime from max iterations
+	 */
+	private final double lifetimeJitter;
+
+	/**
+	 * Max number of renewals triggered by free in progress at same time, zero for no limit
+	 */
+	private final int maxConcurrentRenewals;
+
+	/**
+	 * Number of renewals triggered by free in progress
+	 */
+	private final AtomicInteger renewalsInProgress = new AtomicInteger(0);
+
+	/**
+	 * Retirement criterion asked on each free, null when only max iterations apply
+	 */
+	private final RecyclePolicy<? super T> recyclePolicy;
+
+	/**
+	 * Resources are validated via factory before being given to caller
+	 */
+	private final boolean validateOnBorrow;
+
+	/**
+	 * Growth on demand and shrink when idle, null when pool is not elastic
+	 */
+	private final ElasticSizing<T> sizing;
 
 	/**
 	 * Advanced constructor. It takes as input {@code Factory} object that will be used to create/destroy handled resources.
@@ -98,92 +355,2187 @@ public final class ResourceArbiter<T> {
 	 * @param inMaxIteration is number of iteration each resource must serve before proceed with substitution
 	 */
 	public ResourceArbiter(final Factory<T> inFactory, final Integer nrElement, final Integer inMaxIteration) {
-		factory = inFactory;
-		maxIterations = inMaxIteration;
+		this(builder(inFactory)
+				.size(nrElement)
+				.maxIterations(inMaxIteration), null);
+	}
 
-		resources = new HashMap<>(nrElement);
-		usageCounter = new HashMap<>(nrElement);
+	/**
+	 * Warm resources ready to substitute an exhausted one
+	 */
+	private final ConcurrentLinkedQueue<T> spares = new ConcurrentLinkedQueue<>();
 
-		IntStream.rangeClosed(1, nrElement).forEach(in -> {
-			final T item = factory.newResource();
-			resources.put(item, Boolean.TRUE);
-			usageCounter.put(item, maxIterations);
-		});
+	/**
+	 * Number of spares being created in background, retries included
+	 */
+	private final AtomicInteger replenishing = new AtomicInteger(0);
+
+	/**
+	 * Retired resources queued for close by maintenance executor, shutdown closes the ones still queued
+	 */
+	private final Set<T> retiring = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Executor used for background renewal, null when renewal runs on caller thread
+	 */
+	private final ScheduledExecutorService maintenance;
+
+	/**
+	 * Constructor used by {@code Builder}
+	 *
+	 * @param builder is the configured builder
+	 * @param initialItems is a list of resources generated externally, null to create them via factory
+	 */
+	private ResourceArbiter(final Builder<T> builder, final List<T> initialItems) {
+
+		final String need = builder.maintenanceNeed();
+		if (need != null && builder.renewalThreads == 0) {
+			throw new IllegalArgumentException(String.format("%s requires renewal threads!", need));
+		}
+
+		factory = builder.factory;
+		maxIterations = builder.maxIterations;
+		validateOnBorrow = factory != null && builder.validateOnBorrow;
+		recyclePolicy = factory != null ? builder.recyclePolicy : null;
+		lifetimeJitter = builder.lifetimeJitter;
+		maxConcurrentRenewals = builder.maxConcurrentRenewals;
+		hostAdmission = builder.hostAdmission;
+
+		final int nrElement = initialItems != null
+				? initialItems.size()
+				: Math.max(builder.size, builder.minIdle);
+		final int capacity = Math.max(nrElement, builder.maxTotal);
+
+		final boolean elastic = factory != null && builder.maxTotal > 0;
+
+		items = new AtomicReferenceArray<>(capacity);
+		states = new AtomicIntegerArray(capacity);
+		usageCounter = new AtomicIntegerArray(capacity);
+		lifetimes = new AtomicIntegerArray(capacity);
+		lastReleased = new AtomicLongArray(capacity);
+		reservedAt = new AtomicLongArray(capacity);
+		createdAt = new AtomicLongArray(capacity);
+		leaseReaper = new LeaseReaper<>(capacity, builder.maxHoldTime, builder.leaseStackTraces, metrics);
+		scheduler = new LaneScheduler<>(builder.lanes, capacity, this::idleCount);
+		slots = new ConcurrentHashMap<>(capacity);
+		idle = new SlotStack[Math.max(1, Math.min(builder.shards, capacity))];
+		for (int shard = 0; shard < idle.length; shard++) {
+			idle[shard] = new SlotStack(capacity);
+		}
+		stacked = new AtomicIntegerArray(capacity);
+		vacant = new SlotStack(capacity);
+		countIdle = elastic || scheduler.hasReservations();
+		idleCounts = new AtomicIntegerArray(countIdle ? idle.length * COUNTER_SPACING : 0);
+
+		maintenance = builder.renewalThreads > 0
+				? Executors.newScheduledThreadPool(builder.renewalThreads, new MaintenanceThreadFactory("maintenance"))
+				: null;
+
+		sizing = elastic
+				? new ElasticSizing<>(this, scheduler, maintenance, builder.budget, builder.minIdle, builder.idleTimeout)
+				: null;
+
+		for (int index = capacity - 1; index >= nrElement; index--) {
+			states.set(index, VACANT);
+			vacant.push(index);
+		}
+
+		warmUp = new WarmUp<>(this, nrElement, builder.progressListener);
+
+		if (initialItems == null && (builder.warmUpConcurrency > 1 || builder.warmUpInBackground)) {
+			warmUp.runInParallel(builder.warmUpConcurrency, builder.warmUpInBackground);
+
+			for (int index = 0; index < builder.spares; index++) {
+				replenishing.incrementAndGet();
+				maintenance.execute(this::replenishSpare);
+			}
+		} else {
+			final Object[] created = new Object[nrElement];
+			for (int index = 0; index < nrElement; index++) {
+				if (initialItems != null) {
+					created[index] = initialItems.get(index);
+				} else {
+					created[index] = createResource();
+					warmUp.created(index + 1);
+				}
+			}
+
+			// first created resource on top of idle stack
+			for (int index = nrElement - 1; index >= 0; index--) {
+				@SuppressWarnings("unchecked")
+				final T item = (T) created[index];
+				install(index, item);
+				warmUp.installed();
+			}
+
+			for (int index = 0; index < builder.spares; index++) {
+				spares.add(createResource());
+			}
+		}
+
+		if (sizing != null) {
+			sizing.start();
+		}
+
+		if (factory != null && !builder.validationInterval.isZero()) {
+			final long period = builder.validationInterval.toNanos();
+			maintenance.scheduleWithFixedDelay(this::evictInvalid, period, period, TimeUnit.NANOSECONDS);
+		}
+
+		if (leaseReaper.isEnabled()) {
+			final long period = leaseReaper.period();
+			// max hold time is only set via builder, which always has a factory
+			maintenance.scheduleWithFixedDelay(() -> leaseReaper.reap(this::reclaim, this::renew),
+					period, period, TimeUnit.NANOSECONDS);
+		}
+
+		objectName = builder.jmxName != null ? StatsRegistry.register(builder.jmxName, this::getStats) : null;
 	}
 
 	/**
-	 * This method reserves an instance from handled pool of &lt;T&gt; resources
+	 * Creation of initial resources
+	 */
+	private final WarmUp<T> warmUp;
+
+	/**
+	 * It schedules a new creation for a slot out of service, unless arbiter is shut down.
+	 * A slot that cannot be retried is left vacant.
 	 *
-     * @return an {@code Optional} of &lt;T&gt;
+	 * @param slot is slot index in RENEWING state
 	 */
-	public Optional<T> reserve() {
+	void retryInBackground(final int slot) {
 
-		Optional<T> resp = Optional.empty();
+		if (!shutdown.get()) {
+			try {
+				maintenance.schedule(() -> renewInBackground(slot, false), RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+				return;
+			} catch (final RejectedExecutionException rejected) {
+				// executor stopped by shutdown meanwhile
+			}
+		}
 
-		lock.lock();
-		try {
-			resp = resources.entrySet().stream()
-					.filter(Map.Entry::getValue)
-					.map(Map.Entry::getKey)
-					.findFirst();
-			resp.ifPresent(candidate -> resources.put(candidate, Boolean.FALSE));
-		} finally {
-			lock.unlock();
+		leaveVacant(slot);
+	}
+
+	/**
+	 * It waits until every initial resource is created or left to background retry
+	 *
+	 * @param timeout is max time to wait
+	 *
+	 * @return true if warm up is completed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public boolean awaitWarmUp(final Duration timeout) throws InterruptedException {
+		return warmUp.await(timeout);
+	}
+
+	/**
+	 * It creates a {@code Builder} to configure an arbiter based on {@code Factory}
+	 *
+	 * @param <T> the type of handled resource
+	 * @param inFactory is the {@code Factory} object
+	 *
+	 * @return a new {@code Builder}
+	 */
+	public static <T> Builder<T> builder(final Factory<T> inFactory) {
+		if (inFactory == null) {
+			throw new IllegalArgumentException("Factory is mandatory!");
 		}
+		return new Builder<>(inFactory);
+	}
 
-		return resp;
+	/**
+	 * It places a new resource into a slot and makes it available
+	 *
+	 * @param slot is slot index
+	 * @param item is the resource
+	 */
+	private void install(final int slot, final T item) {
+		assign(slot, item);
+		makeIdle(slot);
 	}
 
 	/**
-	 * This method frees booked resource
+	 * It pushes a slot into idle stack. Caller must own the slot.
 	 *
-	 * @param item is booked object to be free
+	 * @param slot is slot index
 	 */
-	public void free(final T item) {
+	private void makeIdle(final int slot) {
+		makeIdle(slot, System.nanoTime());
+	}
+
+	/**
+	 * It pushes a slot into idle stack. Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 * @param releasedAt is {@code System.nanoTime} when slot was released
+	 */
+	private void makeIdle(final int slot, final long releasedAt) {
+		lastReleased.set(slot, releasedAt);
+		states.set(slot, IDLE);
+		countIdle(slot, 1);
 
-		// only if false
-		if (!resources.get(item)) {
+		// an entry still into the stack becomes valid again
+		if (stacked.compareAndSet(slot, 0, 1)) {
+			idle[slot % idle.length].push(slot);
+		}
+	}
 
-			Optional<T> disposeItem = Optional.empty();
+	/**
+	 * It places a new resource into a slot with a fresh usage counter
+	 *
+	 * @param slot is slot index
+	 * @param item is the resource
+	 */
+	private void assign(final int slot, final T item) {
+		items.set(slot, item);
+		final int lifetime = lifetime();
+		lifetimes.set(slot, lifetime);
+		usageCounter.set(slot, lifetime);
+		createdAt.set(slot, System.nanoTime());
+		slots.put(item, slot);
+	}
 
-			lock.lock();
-			try {
-				if (usageCounter != null) { // extended
-					final Integer currCounter = usageCounter.get(item) - 1;
-
-					if (currCounter == 0) { // leave item in FALSE state
-						disposeItem = Optional.of(item);
-					} else { // make item available
-						resources.put(item, Boolean.TRUE);
-						usageCounter.put(item, currCounter);
-					}
-				} else {
-					resources.put(item, Boolean.TRUE);
-				}
+	/**
+	 * It draws number of iterations of a new resource, so resources created together
+	 * are not exhausted together
+	 *
+	 * @return number of iterations
+	 */
+	private int lifetime() {
 
-			} finally {
-				lock.unlock();
-			}
+		if (lifetimeJitter == 0.0 || maxIterations == Integer.MAX_VALUE) {
+			return maxIterations;
+		}
 
-			disposeItem.ifPresent(item2DisposeRenew -> {
+		final double deviation = lifetimeJitter * (2.0 * ThreadLocalRandom.current().nextDouble() - 1.0);
+		final long lifetime = Math.round(maxIterations * (1.0 + deviation));
 
-				logger.info("#### Re-new of shareable item.");
+		return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, lifetime));
+	}
 
-				final T renewItem = factory.newResource();
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources
+	 *
+     * @return an {@code Optional} of &lt;T&gt;
+	 */
+	public Optional<T> reserve() {
 
-				lock.lock();
-				try {
-					resources.remove(item2DisposeRenew);
-					usageCounter.remove(item2DisposeRenew);
+		final int slot = tryReserve(DEFAULT_LANE);
+		if (slot == SlotStack.EMPTY) {
+			metrics.emptyReserveMisses.increment();
+			return Optional.empty();
+		}
 
-					factory.closeResource(item2DisposeRenew);
+		metrics.waitTime.record(0L);
+		return Optional.of(items.get(slot));
+	}
 
-					resources.put(renewItem, Boolean.TRUE);
-					usageCounter.put(renewItem, maxIterations);
-				} finally {
-					lock.unlock();
-				}
-			});
+	/**
+	 * It takes an idle slot without waiting
+	 *
+	 * @param lane is lane of reservation
+	 *
+	 * @return slot index in BUSY state or {@code SlotStack.EMPTY}
+	 */
+	private int tryReserve(final int lane) {
+
+		checkOpen();
+
+		for (;;) {
+			// queued waiters are served first
+			if (scheduler.waitersFirst(lane)) {
+				return SlotStack.EMPTY;
+			}
+
+			final int slot = popIdle();
+			final boolean admitted = slot != SlotStack.EMPTY && admit(slot, lane);
+			adjustCapacity(!admitted);
+
+			if (!admitted) {
+				return SlotStack.EMPTY;
+			}
+			if (validOnBorrow(slot)) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * It assigns a just claimed slot to a lane, unless it is kept for capacity reserved to other lanes
+	 *
+	 * @param slot is slot index in BUSY state
+	 * @param lane is lane of reservation
+	 *
+	 * @return false if slot was given back
+	 */
+	private boolean admit(final int slot, final int lane) {
+
+		if (!scheduler.mayServe(lane, 0)) {
+			release(slot, lastReleased.get(slot));
+			return false;
+		}
+
+		scheduler.occupy(slot, lane);
+		return true;
+	}
+
+	/**
+	 * It validates a just reserved slot, if validation on borrow is enabled.
+	 * An invalid resource is renewed and slot ownership is lost.
+	 *
+	 * @param slot is slot index in BUSY state
+	 *
+	 * @return true if resource can be given to caller
+	 */
+	private boolean validOnBorrow(final int slot) {
+
+		if (!validateOnBorrow || isValid(items.get(slot))) {
+			return true;
+		}
+
+		invalidate(slot);
+		return false;
+	}
+
+	/**
+	 * It asks factory to validate a resource, a failing check means invalid resource
+	 *
+	 * @param item is the resource
+	 *
+	 * @return true if resource can be used
+	 */
+	private boolean isValid(final T item) {
+
+		try {
+			return factory.validate(item);
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during validation of shareable item -> %s", e.getMessage()));
+			return false;
+		}
+	}
+
+	/**
+	 * It renews a slot whose resource failed validation. Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 */
+	private void invalidate(final int slot) {
+
+		logger.warn("#### Invalid shareable item.");
+		metrics.invalidations.increment();
+
+		renew(slot);
+	}
+
+	/**
+	 * It checks idle resources in background, renewing the invalid ones.
+	 * Slot under check is out of idle stack for the duration of validation.
+	 */
+	private void evictInvalid() {
+
+		for (int slot = 0; slot < states.length(); slot++) {
+
+			final long releasedAt = lastReleased.get(slot);
+
+			if (states.get(slot) == IDLE && claimIdle(slot)) {
+				if (isValid(items.get(slot))) {
+					release(slot, releasedAt);
+				} else {
+					invalidate(slot);
+				}
+			}
+		}
+	}
+
+	/**
+	 * It takes ownership of an idle slot, skipping stale entries of slots already taken.
+	 * Shard of calling thread is tried first, then the following ones are robbed in turn.
+	 *
+	 * @return slot index in BUSY state or {@code SlotStack.EMPTY}
+	 */
+	private int popIdle() {
+
+		final int home = idle.length > 1 ? homeShard() : 0;
+
+		for (int step = 0; step < idle.length; step++) {
+			final int slot = popIdle(idle[(home + step) % idle.length]);
+			if (slot != SlotStack.EMPTY) {
+				return slot;
+			}
+		}
+
+		return SlotStack.EMPTY;
+	}
+
+	/**
+	 * It takes ownership of an idle slot of a shard
+	 *
+	 * @param shard is the idle stack
+	 *
+	 * @return slot index in BUSY state or {@code SlotStack.EMPTY}
+	 */
+	private int popIdle(final SlotStack shard) {
+
+		for (;;) {
+			final int slot = shard.pop();
+			if (slot == SlotStack.EMPTY) {
+				return SlotStack.EMPTY;
+			}
+
+			stacked.set(slot, 0);
+
+			if (claimIdle(slot)) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Shard of calling thread, thread ids are mixed so consecutive ids spread over shards
+	 *
+	 * @return shard index
+	 */
+	private int homeShard() {
+		final long mixed = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) ((mixed >>> 32) % idle.length);
+	}
+
+	/**
+	 * It updates idle counter of slot shard, if idle resources are counted
+	 *
+	 * @param slot is slot index
+	 * @param delta is the change
+	 */
+	private void countIdle(final int slot, final int delta) {
+		if (countIdle) {
+			idleCounts.addAndGet((slot % idle.length) * COUNTER_SPACING, delta);
+		}
+	}
+
+	/**
+	 * @return number of idle resources, zero if not counted
+	 */
+	int idleCount() {
+
+		int resp = 0;
+		for (int shard = 0; shard < idle.length && countIdle; shard++) {
+			resp += idleCounts.get(shard * COUNTER_SPACING);
+		}
+
+		return resp;
+	}
+
+	/**
+	 * It takes ownership of a given slot if idle
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return true if slot moved to BUSY state
+	 */
+	private boolean claimIdle(final int slot) {
+
+		if (states.compareAndSet(slot, IDLE, BUSY)) {
+			countIdle(slot, -1);
+			reservedAt.set(slot, System.nanoTime());
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources, waiting up to
+	 * {@code timeout} when every resource is busy. Waiting threads are parked and served in FIFO order.
+	 *
+	 * @param timeout is max time to wait for a free resource, zero or negative means no wait
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;, empty if timeout elapsed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public Optional<T> reserve(final Duration timeout) throws InterruptedException {
+
+		if (timeout.isZero() || timeout.isNegative()) {
+			return reserve();
+		}
+
+		return Optional.ofNullable(await(DEFAULT_LANE, timeout.toNanos()));
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources on behalf of a priority lane,
+	 * waiting up to {@code timeout} when every resource is busy. Lanes are configured via {@code Builder.lane}.
+	 *
+	 * @param lane is lane index, {@code DEFAULT_LANE} is used by other reservation methods
+	 * @param timeout is max time to wait for a free resource, zero or negative means no wait
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;, empty if timeout elapsed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public Optional<T> reserve(final int lane, final Duration timeout) throws InterruptedException {
+
+		scheduler.checkLane(lane);
+
+		if (timeout.isZero() || timeout.isNegative()) {
+			final int slot = tryReserve(lane);
+			if (slot == SlotStack.EMPTY) {
+				metrics.emptyReserveMisses.increment();
+				return Optional.empty();
+			}
+
+			metrics.waitTime.record(0L);
+			return Optional.of(items.get(slot));
+		}
+
+		return Optional.ofNullable(await(lane, timeout.toNanos()));
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources,
+	 * waiting as long as necessary. Waiting threads are parked and served in FIFO order.
+	 *
+	 * @return a reserved &lt;T&gt; resource
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public T reserveInterruptibly() throws InterruptedException {
+		return await(DEFAULT_LANE, -1L);
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources without blocking caller.
+	 * Returned future is completed by {@code free} or by a renewal as soon as a resource is available,
+	 * asynchronous waiters are served in FIFO order together with blocking ones.
+	 * Cancelling returned future withdraws the waiter.
+	 *
+	 * @return a {@code CompletableFuture} of &lt;T&gt;
+	 */
+	public CompletableFuture<T> reserveAsync() {
+		return reserveAsync(DEFAULT_LANE, -1L);
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources without blocking caller,
+	 * waiting up to {@code timeout}. When timeout elapses returned future fails with {@code TimeoutException}.
+	 *
+	 * @param timeout is max time to wait for a free resource, zero or negative means no wait
+	 *
+	 * @return a {@code CompletableFuture} of &lt;T&gt;
+	 */
+	public CompletableFuture<T> reserveAsync(final Duration timeout) {
+		return reserveAsync(DEFAULT_LANE, Math.max(0L, timeout.toNanos()));
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources on behalf of a priority lane
+	 * without blocking caller, waiting up to {@code timeout}. Lanes are configured via {@code Builder.lane}.
+	 *
+	 * @param lane is lane index, {@code DEFAULT_LANE} is used by other reservation methods
+	 * @param timeout is max time to wait for a free resource, zero or negative means no wait
+	 *
+	 * @return a {@code CompletableFuture} of &lt;T&gt;
+	 */
+	public CompletableFuture<T> reserveAsync(final int lane, final Duration timeout) {
+		return reserveAsync(scheduler.checkLane(lane), Math.max(0L, timeout.toNanos()));
+	}
+
+	/**
+	 * It reserves a resource, queuing as asynchronous waiter when none is idle
+	 *
+	 * @param lane is lane of reservation
+	 * @param timeoutNanos is max time to wait, negative to wait as long as necessary
+	 *
+	 * @return a {@code CompletableFuture} of reserved resource
+	 */
+	private CompletableFuture<T> reserveAsync(final int lane, final long timeoutNanos) {
+
+		final long start = System.nanoTime();
+
+		final int slot = tryReserve(lane);
+		if (slot != SlotStack.EMPTY) {
+			metrics.waitTime.record(0L);
+			return CompletableFuture.completedFuture(items.get(slot));
+		}
+
+		final CompletableFuture<T> resp = new CompletableFuture<>();
+
+		if (timeoutNanos == 0L) {
+			metrics.emptyReserveMisses.increment();
+			resp.completeExceptionally(new TimeoutException("No idle resource"));
+			return resp;
+		}
+
+		// a cancelled or expired reservation withdraws its waiter
+		final AtomicReference<CompletableFuture<T>> current = new AtomicReference<>();
+		resp.whenComplete((item, error) -> {
+			if (error != null) {
+				scheduler.dropWaiter(current.get());
+			}
+		});
+
+		if (timeoutNanos > 0L) {
+			final ScheduledFuture<?> timer = AsyncTimer.INSTANCE.schedule(() -> {
+				if (resp.completeExceptionally(new TimeoutException("Reservation timed out"))) {
+					metrics.reserveTimeouts.increment();
+				}
+			}, timeoutNanos, TimeUnit.NANOSECONDS);
+
+			resp.whenComplete((item, error) -> timer.cancel(false));
+		}
+
+		awaitAsync(lane, resp, current, start);
+
+		return resp;
+	}
+
+	/**
+	 * It queues a waiter completing {@code resp}. A resource handed to a reservation
+	 * already cancelled is given back, an invalid one is renewed and a new waiter is queued.
+	 *
+	 * @param lane is lane of reservation
+	 * @param resp is the future returned to caller
+	 * @param current tracks waiter queued for {@code resp}
+	 * @param start is {@code System.nanoTime} of reservation
+	 */
+	private void awaitAsync(
+			final int lane,
+			final CompletableFuture<T> resp,
+			final AtomicReference<CompletableFuture<T>> current,
+			final long start) {
+
+		final CompletableFuture<T> waiter = enqueueWaiter(lane);
+		current.set(waiter);
+
+		// cancelled while waiter was being queued
+		if (resp.isDone()) {
+			scheduler.dropWaiter(waiter);
+		}
+
+		waiter.whenComplete((item, error) -> {
+			if (error != null) { // failed by shutdown
+				resp.completeExceptionally(error);
+			} else if (!validOnBorrow(slots.get(item))) {
+				awaitAsync(lane, resp, current, start);
+			} else if (resp.complete(item)) {
+				metrics.waitTime.record(System.nanoTime() - start);
+			} else {
+				giveBack(item);
+			}
+		});
+	}
+
+	/**
+	 * It reserves a resource, queuing as waiter when none is idle
+	 *
+	 * @param lane is lane of reservation
+	 * @param timeoutNanos is max time to wait, negative to wait as long as necessary
+	 *
+	 * @return reserved resource or null if timeout elapsed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	private T await(final int lane, final long timeoutNanos) throws InterruptedException {
+
+		final long start = System.nanoTime();
+
+		final int slot = tryReserve(lane);
+		if (slot != SlotStack.EMPTY) {
+			metrics.waitTime.record(0L);
+			return items.get(slot);
+		}
+
+		for (;;) {
+			final CompletableFuture<T> waiter = enqueueWaiter(lane);
+
+			T resp;
+			try {
+				resp = timeoutNanos < 0L
+						? waiter.get()
+						: waiter.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+			} catch (final TimeoutException e) {
+				resp = withdrawWaiter(waiter).orElse(null);
+				if (resp == null) {
+					metrics.reserveTimeouts.increment();
+					return null;
+				}
+			} catch (final InterruptedException e) {
+				withdrawWaiter(waiter).ifPresent(this::giveBack);
+				throw e;
+			} catch (final ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+
+			// an invalid resource is renewed, so wait for another one
+			if (validOnBorrow(slots.get(resp))) {
+				metrics.waitTime.record(System.nanoTime() - start);
+				return resp;
+			}
+		}
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources as a {@code Lease},
+	 * closing the lease frees the resource
+	 *
+	 * @return an {@code Optional} of {@code Lease}
+	 */
+	public Optional<Lease<T>> reserveLease() {
+		return reserve().map(this::lease);
+	}
+
+	/**
+	 * This method reserves an instance from handled pool of &lt;T&gt; resources as a {@code Lease},
+	 * waiting up to {@code timeout} when every resource is busy. Closing the lease frees the resource.
+	 *
+	 * @param timeout is max time to wait for a free resource, zero or negative means no wait
+	 *
+	 * @return an {@code Optional} of {@code Lease}, empty if timeout elapsed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public Optional<Lease<T>> reserveLease(final Duration timeout) throws InterruptedException {
+		return reserve(timeout).map(this::lease);
+	}
+
+	/**
+	 * It tracks a just reserved resource as leased by current thread
+	 *
+	 * @param item is reserved resource
+	 *
+	 * @return the lease
+	 */
+	private Lease<T> lease(final T item) {
+
+		return leaseReaper.open(this, slots.get(item), item);
+	}
+
+	/**
+	 * It takes ownership of slot of a reclaimed lease
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return false if resource was freed meanwhile
+	 */
+	private boolean reclaim(final int slot) {
+
+		if (!states.compareAndSet(slot, BUSY, RELEASING)) {
+			return false;
+		}
+
+		metrics.holdTime.record(System.nanoTime() - reservedAt.get(slot));
+		return true;
+	}
+
+	/**
+	 * This method reserves an instance preferring the one that served same affinity key last time,
+	 * so browser caches, DNS and TLS sessions are warm. If that one is busy any idle instance is returned.
+	 *
+	 * @param affinityKey is the affinity key, see {@code Affinity} for built-in keys
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;
+	 */
+	public Optional<T> reserveFor(final Object affinityKey) {
+
+		final Optional<T> resp = reservePreferred(affinityKey);
+		if (resp.isPresent()) {
+			return resp;
+		}
+
+		return remember(affinityKey, reserve());
+	}
+
+	/**
+	 * This method reserves an instance preferring the one that served same affinity key last time,
+	 * waiting up to {@code timeout} when every resource is busy.
+	 *
+	 * @param affinityKey is the affinity key, see {@code Affinity} for built-in keys
+	 * @param timeout is max time to wait for a free resource, zero or negative means no wait
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;, empty if timeout elapsed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public Optional<T> reserveFor(final Object affinityKey, final Duration timeout) throws InterruptedException {
+
+		final Optional<T> resp = reservePreferred(affinityKey);
+		if (resp.isPresent()) {
+			return resp;
+		}
+
+		return remember(affinityKey, reserve(timeout));
+	}
+
+	/**
+	 * It takes slot that served affinity key last time, if idle
+	 *
+	 * @param affinityKey is the affinity key
+	 *
+	 * @return an {@code Optional} of &lt;T&gt;
+	 */
+	private Optional<T> reservePreferred(final Object affinityKey) {
+
+		checkOpen();
+
+		final Integer preferred = affinity.get(affinityKey);
+
+		// queued waiters are served first
+		if (preferred == null || scheduler.waitersFirst(DEFAULT_LANE) || !claimIdle(preferred)
+				|| !admit(preferred, DEFAULT_LANE) || !validOnBorrow(preferred)) {
+			return Optional.empty();
+		}
+
+		adjustCapacity(false);
+		metrics.waitTime.record(0L);
+		return Optional.of(items.get(preferred));
+	}
+
+	/**
+	 * It records which slot served an affinity key
+	 *
+	 * @param affinityKey is the affinity key
+	 * @param resp is reserved resource
+	 *
+	 * @return resp
+	 */
+	private Optional<T> remember(final Object affinityKey, final Optional<T> resp) {
+
+		resp.ifPresent(item -> {
+			final Integer slot = slots.get(item);
+			if (slot != null) {
+				affinity.put(affinityKey, slot);
+			}
+		});
+
+		return resp;
+	}
+
+	/**
+	 * It appends a new waiter to the queue of its lane
+	 *
+	 * @param lane is lane of reservation
+	 *
+	 * @return the waiter completed by {@code free}
+	 */
+	private CompletableFuture<T> enqueueWaiter(final int lane) {
+
+		final CompletableFuture<T> waiter = scheduler.enqueue(lane);
+
+		// waiter queued while shutdown was failing the others
+		if (shutdown.get()) {
+			scheduler.failWaiters();
+			return waiter;
+		}
+
+		// a slot may have been pushed before waiter was visible
+		signalWaiters();
+		adjustCapacity(true);
+
+		return waiter;
+	}
+
+	/**
+	 * It removes a waiter that gave up. If a resource was handed to it in the meantime that resource is returned.
+	 *
+	 * @param waiter is the waiter to be removed
+	 *
+	 * @return an {@code Optional} of resource handed to the waiter
+	 */
+	private Optional<T> withdrawWaiter(final CompletableFuture<T> waiter) {
+
+		if (scheduler.dropWaiter(waiter) || waiter.isCompletedExceptionally()) {
+			return Optional.empty();
+		}
+
+		// already completed by free()
+		return Optional.of(waiter.join());
+	}
+
+	/**
+	 * It gives back a busy resource without ageing it
+	 *
+	 * @param item is the resource
+	 */
+	private void giveBack(final T item) {
+
+		final Integer slot = slots.get(item);
+
+		if (slot != null && states.compareAndSet(slot, BUSY, RELEASING)) {
+			release(slot);
+		}
+	}
+
+	/**
+	 * It hands a slot to the first waiter or, if nobody is waiting, makes it available.
+	 * Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 */
+	private void release(final int slot) {
+		release(slot, System.nanoTime());
+	}
+
+	/**
+	 * It hands a slot to the first waiter or, if nobody is waiting, makes it available.
+	 * Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 * @param releasedAt is {@code System.nanoTime} to be tracked as release time
+	 */
+	private void release(final int slot, final long releasedAt) {
+
+		scheduler.vacate(slot);
+
+		// after shutdown every resource coming back is closed
+		if (shutdown.get()) {
+			closedOnShutdown.incrementAndGet();
+			dispose(evict(slot));
+			return;
+		}
+
+		if (!handOff(slot)) {
+			makeIdle(slot, releasedAt);
+
+			// a waiter may have been queued after handOff
+			signalWaiters();
+		} else if (scheduler.hasReservations()) {
+			// a lane reaching its reserved capacity lets other lanes use idle resources
+			signalWaiters();
+		}
+	}
+
+	/**
+	 * It tries to give slot resource to the first waiter still waiting of next lane
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return true if resource was handed to a waiter
+	 */
+	private boolean handOff(final int slot) {
+
+		int lane;
+		while ((lane = scheduler.nextLane(0)) >= 0) {
+
+			final CompletableFuture<T> waiter = scheduler.poll(lane);
+			if (waiter == null) { // taken by a concurrent handOff
+				continue;
+			}
+
+			states.set(slot, BUSY);
+			reservedAt.set(slot, System.nanoTime());
+			scheduler.occupy(slot, lane);
+
+			if (waiter.complete(items.get(slot))) {
+				scheduler.charge(lane);
+				return true;
+			}
+
+			scheduler.vacate(slot);
+		}
+
+		return false;
+	}
+
+	/**
+	 * It serves queued waiters with idle slots until one of two is exhausted
+	 */
+	private void signalWaiters() {
+
+		while (scheduler.nextLane(1) >= 0) {
+
+			final int slot = popIdle();
+			if (slot == SlotStack.EMPTY) {
+				return;
+			}
+
+			if (!handOff(slot)) {
+				makeIdle(slot);
+			}
+		}
+	}
+
+	/**
+	 * It grows elastic pool in background when idle resources plus the ones being created
+	 * don't cover queued waiters and minimum idle size.
+	 *
+	 * @param missed is true when a reservation found no idle resource
+	 */
+	private void adjustCapacity(final boolean missed) {
+		if (sizing != null) {
+			sizing.adjust(missed);
+		}
+	}
+
+	/**
+	 * It closes the least recently used idle resource of an elastic pool, so its capacity
+	 * can be used by another pool sharing same budget. Capacity is not given back to budget,
+	 * it is left to caller.
+	 *
+	 * @return true if a resource was retired
+	 */
+	boolean retireIdle() {
+		return sizing != null && sizing.retireIdle();
+	}
+
+	/**
+	 * It asks an elastic pool to grow for its queued waiters, e.g. after shared capacity was freed
+	 */
+	void grow() {
+		if (sizing != null) {
+			sizing.grow();
+		}
+	}
+
+	/**
+	 * @return true if arbiter is shut down
+	 */
+	boolean isShutdown() {
+		return shutdown.get();
+	}
+
+	/**
+	 * @return number of slots, vacant ones included
+	 */
+	int capacity() {
+		return states.length();
+	}
+
+	/**
+	 * @param slot is slot index
+	 *
+	 * @return true if slot holds a resource ready to be reserved
+	 */
+	boolean isIdle(final int slot) {
+		return states.get(slot) == IDLE;
+	}
+
+	/**
+	 * @param slot is slot index
+	 *
+	 * @return {@code System.nanoTime} when slot was made available last time
+	 */
+	long releasedAt(final int slot) {
+		return lastReleased.get(slot);
+	}
+
+	/**
+	 * It marks a slot without resource as being created, e.g. during warm up
+	 *
+	 * @param slot is slot index
+	 */
+	void takeOutOfService(final int slot) {
+		states.set(slot, RENEWING);
+	}
+
+	/**
+	 * It stops background maintenance of an arbiter that is never handed to caller
+	 */
+	void abort() {
+		shutdown.set(true);
+		maintenance.shutdownNow();
+	}
+
+	/**
+	 * It takes a vacant slot out of service, so that a new resource can be created for it
+	 *
+	 * @return slot index in RENEWING state or {@code SlotStack.EMPTY} if no slot is vacant
+	 */
+	int takeVacant() {
+
+		final int slot = vacant.pop();
+		if (slot != SlotStack.EMPTY) {
+			takeOutOfService(slot);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * It creates a resource for a slot out of service and releases the slot
+	 *
+	 * @param slot is slot index in RENEWING state
+	 */
+	void fill(final int slot) {
+		assign(slot, createResource());
+		release(slot);
+	}
+
+	/**
+	 * It makes a slot available for pool growth. Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 */
+	void leaveVacant(final int slot) {
+		states.set(slot, VACANT);
+		vacant.push(slot);
+	}
+
+	/**
+	 * It takes resource out of an idle slot, leaving the slot vacant.
+	 * Capacity is not given back to budget, it is left to caller.
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return the resource to be closed, null if slot was not idle
+	 */
+	T evictIdle(final int slot) {
+
+		if (!states.compareAndSet(slot, IDLE, EVICTING)) {
+			return null;
+		}
+
+		countIdle(slot, -1);
+
+		final T item = items.get(slot);
+		slots.remove(item);
+
+		leaveVacant(slot);
+
+		return item;
+	}
+
+	/**
+	 * This method frees booked resource
+	 *
+	 * @param item is booked object to be free
+	 */
+	public void free(final T item) {
+
+		final Integer slot = slots.get(item);
+
+		// only if busy
+		if (slot == null || !states.compareAndSet(slot, BUSY, RELEASING)) {
+			return;
+		}
+
+		leaseReaper.close(slot);
+		metrics.holdTime.record(System.nanoTime() - reservedAt.get(slot));
+
+		// resource is closed by release, neither renewed nor reset
+		if (shutdown.get()) {
+			release(slot);
+			return;
+		}
+
+		if (factory != null && (usageCounter.decrementAndGet(slot) <= 0 || recycleDue(slot))) {
+			if (beginRenewal()) {
+				renew(slot, true);
+				return;
+			}
+
+			// too many renewals in progress, resource serves until a later free
+			logger.info("#### Re-new of shareable item deferred.");
+			metrics.deferredRenewals.increment();
+		}
+
+		if (factory != null && !isReset(items.get(slot))) {
+			try {
+				invalidate(slot);
+			} catch (final RuntimeException e) {
+				// renewal on caller thread failed and slot left the pool, caller only gave back the resource
+			}
+			return;
+		}
+
+		release(slot);
+	}
+
+	/**
+	 * It asks factory to clean a just freed resource, a failing reset means invalid resource
+	 *
+	 * @param item is the resource
+	 *
+	 * @return true if resource can go back into pool
+	 */
+	private boolean isReset(final T item) {
+
+		try {
+			return factory.reset(item);
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during reset of shareable item -> %s", e.getMessage()));
+			return false;
+		}
+	}
+
+	/**
+	 * It takes a place among renewals in progress
+	 *
+	 * @return false if max concurrent renewals is reached
+	 */
+	private boolean beginRenewal() {
+
+		if (maxConcurrentRenewals == 0) {
+			return true;
+		}
+
+		int current;
+		do {
+			current = renewalsInProgress.get();
+			if (current >= maxConcurrentRenewals) {
+				return false;
+			}
+		} while (!renewalsInProgress.compareAndSet(current, current + 1));
+
+		return true;
+	}
+
+	/**
+	 * It leaves a place among renewals in progress
+	 *
+	 * @param counted is true if renewal was started by {@code beginRenewal}
+	 */
+	private void endRenewal(final boolean counted) {
+		if (counted && maxConcurrentRenewals > 0) {
+			renewalsInProgress.decrementAndGet();
+		}
+	}
+
+	/**
+	 * It asks recycle policy if a just freed slot resource must be retired, a failing policy keeps it
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return true if resource must be renewed
+	 */
+	private boolean recycleDue(final int slot) {
+
+		if (recyclePolicy == null) {
+			return false;
+		}
+
+		final long uses = (long) lifetimes.get(slot) - usageCounter.get(slot);
+		final Duration age = Duration.ofNanos(System.nanoTime() - createdAt.get(slot));
+
+		try {
+			return recyclePolicy.shouldRecycle(items.get(slot), uses, age);
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during recycle check of shareable item -> %s", e.getMessage()));
+			return false;
+		}
+	}
+
+	/**
+	 * It substitutes slot resource with a new one and releases the slot. Caller must own the slot.
+	 * When background renewal is enabled a warm spare, if any, takes place of exhausted resource
+	 * immediately, otherwise slot is renewed by maintenance executor.
+	 *
+	 * @param slot is slot index
+	 */
+	private void renew(final int slot) {
+		renew(slot, false);
+	}
+
+	/**
+	 * It substitutes slot resource with a new one and releases the slot. Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 * @param counted is true if renewal was started by {@code beginRenewal}, it ends when new resource is created
+	 */
+	private void renew(final int slot, final boolean counted) {
+
+		scheduler.vacate(slot);
+
+		logger.info("#### Re-new of shareable item.");
+		metrics.renewals.increment();
+
+		final T item2DisposeRenew = items.get(slot);
+
+		if (maintenance == null) {
+			final T renewItem;
+			try {
+				renewItem = createResource();
+			} catch (final RuntimeException e) {
+				// nobody would retry, slot leaves the pool instead of staying busy
+				logger.error(String.format("XXXX Error during re-new of shareable item -> %s", e.getMessage()));
+				dispose(evict(slot));
+				throw e;
+			} finally {
+				endRenewal(counted);
+			}
+
+			slots.remove(item2DisposeRenew);
+			dispose(item2DisposeRenew);
+
+			assign(slot, renewItem);
+			release(slot);
+			return;
+		}
+
+		slots.remove(item2DisposeRenew);
+		retire(item2DisposeRenew);
+
+		final T spare = spares.poll();
+
+		if (spare != null) {
+			assign(slot, spare);
+			release(slot);
+			replenishing.incrementAndGet();
+			maintenance.execute(() -> {
+				try {
+					replenishSpare();
+				} finally {
+					endRenewal(counted);
+				}
+			});
+		} else {
+			states.set(slot, RENEWING);
+			maintenance.execute(() -> renewInBackground(slot, counted));
+		}
+	}
+
+	/**
+	 * It creates a new resource for a slot out of service, retrying later on failure
+	 *
+	 * @param slot is slot index
+	 * @param counted is true if renewal was started by {@code beginRenewal}
+	 */
+	private void renewInBackground(final int slot, final boolean counted) {
+
+		final T item;
+		try {
+			item = createResource();
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during re-new of shareable item -> %s", e.getMessage()));
+			if (!shutdown.get()) {
+				try {
+					// retry keeps its place among renewals in progress
+					maintenance.schedule(() -> renewInBackground(slot, counted), RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+					return;
+				} catch (final RejectedExecutionException rejected) {
+					// executor stopped by shutdown meanwhile
+				}
+			}
+			endRenewal(counted);
+			leaveVacant(slot);
+			releaseCapacity();
+			return;
+		}
+
+		endRenewal(counted);
+		assign(slot, item);
+		release(slot);
+	}
+
+	/**
+	 * It closes a retired resource via maintenance executor, or on caller thread once executor is stopped
+	 *
+	 * @param item is the resource
+	 */
+	void retire(final T item) {
+
+		retiring.add(item);
+
+		try {
+			maintenance.execute(() -> disposeRetired(item));
+		} catch (final RejectedExecutionException e) {
+			disposeRetired(item);
+		}
+	}
+
+	/**
+	 * It closes a retired resource, unless shutdown has already taken it
+	 *
+	 * @param item is the resource
+	 */
+	private void disposeRetired(final T item) {
+
+		if (retiring.remove(item)) {
+			dispose(item);
+			if (shutdown.get()) {
+				closedOnShutdown.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * It creates a new warm spare, retrying later on failure. Caller must count it into {@code replenishing}.
+	 */
+	private void replenishSpare() {
+
+		try {
+			spares.add(createResource());
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during creation of spare item -> %s", e.getMessage()));
+			if (!shutdown.get()) {
+				try {
+					maintenance.schedule(this::replenishSpare, RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+					return;
+				} catch (final RejectedExecutionException rejected) {
+					// executor stopped by shutdown meanwhile
+				}
+			}
+			replenishing.decrementAndGet();
+			return;
+		}
+
+		replenishing.decrementAndGet();
+
+		// spare added while shutdown was closing the others
+		if (shutdown.get()) {
+			T spare;
+			while ((spare = spares.poll()) != null) {
+				closedOnShutdown.incrementAndGet();
+				dispose(spare);
+			}
+		}
+	}
+
+	/**
+	 * It creates a new resource via factory, tracking creation latency and failures
+	 *
+	 * @return new instance of handled resource
+	 */
+	private T createResource() {
+
+		checkOpen();
+
+		if (hostAdmission != null) {
+			switch (hostAdmission.acquire()) {
+			case DELAYED:
+				metrics.hostDelays.increment();
+				break;
+			case REFUSED:
+				metrics.hostRefusals.increment();
+				metrics.creationFailures.increment();
+				throw new IllegalStateException("Creation refused, host capacity exhausted!");
+			default:
+				break;
+			}
+		}
+
+		final long start = System.nanoTime();
+		final T item;
+		try {
+			item = factory.newResource();
+			metrics.creationTime.record(System.nanoTime() - start);
+		} catch (final RuntimeException e) {
+			metrics.creationFailures.increment();
+			throw e;
+		} finally {
+			if (hostAdmission != null) {
+				hostAdmission.release();
+			}
+		}
+
+		// shutdown began during creation
+		if (shutdown.get()) {
+			closedOnShutdown.incrementAndGet();
+			dispose(item);
+			checkOpen();
+		}
+
+		return item;
+	}
+
+	/**
+	 * @throws IllegalStateException if arbiter is shut down
+	 */
+	private void checkOpen() {
+		if (shutdown.get()) {
+			throw new IllegalStateException("Arbiter is shut down!");
+		}
+	}
+
+	/**
+	 * It shuts down arbiter: queued and new reservations fail, resources freed within
+	 * {@code grace} are closed by caller of {@code free} and renewals in progress are closed as soon as
+	 * created. When every resource is back, spares are created and retired resources are closed, or when
+	 * grace period elapsed, idle resources, spares, retired resources still queued for close and resources
+	 * still reserved are closed in parallel via {@code Factory.closeResource}. Resources generated externally
+	 * are not closed, they are only tracked as closed. Interruption ends grace period early.
+	 *
+	 * @param grace is max time to wait for reserved resources and background renewals
+	 *
+	 * @return a {@code ShutdownReport} with resources closed while still reserved
+	 *
+	 * @throws IllegalStateException if arbiter is already shut down
+	 */
+	public ShutdownReport<T> shutdown(final Duration grace) {
+
+		final long start = System.nanoTime();
+
+		if (!shutdown.compareAndSet(false, true)) {
+			throw new IllegalStateException("Arbiter is already shut down!");
+		}
+
+		logger.info("#### Shutdown of shareable items pool.");
+
+		final int cancelledWaiters = scheduler.failWaiters();
+
+		final long deadline = start + Math.max(0L, grace.toNanos());
+		while (inFlight() > 0 && System.nanoTime() - deadline < 0L) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(SHUTDOWN_POLL_MILLIS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		if (maintenance != null) {
+			maintenance.shutdownNow();
+		}
+
+		final List<T> idleItems = new ArrayList<>();
+		final List<T> forced = new ArrayList<>();
+
+		// retired resources whose close was still queued when executor stopped
+		for (final T item : retiring) {
+			if (retiring.remove(item)) {
+				idleItems.add(item);
+			}
+		}
+
+		for (int slot = 0; slot < states.length(); slot++) {
+
+			if (claimIdle(slot)) {
+				idleItems.add(evict(slot));
+
+			} else if (states.compareAndSet(slot, BUSY, EVICTING)) {
+				final Lease<T> lease = leaseReaper.take(slot);
+				scheduler.vacate(slot);
+
+				final T item = evict(slot);
+				if (lease != null && lease.reclaim()) {
+					logger.warn(String.format("XXXX Force close of %s", lease), lease.getTrace());
+				} else {
+					logger.warn(String.format("XXXX Force close of reserved item %s", item));
+				}
+				forced.add(item);
+			}
+		}
+
+		T spare;
+		while ((spare = spares.poll()) != null) {
+			idleItems.add(spare);
+		}
+
+		closedOnShutdown.addAndGet(idleItems.size());
+
+		final List<T> toClose = new ArrayList<>(idleItems);
+		toClose.addAll(forced);
+		closeInParallel(toClose);
+
+		StatsRegistry.unregister(objectName);
+
+		final ShutdownReport<T> report = new ShutdownReport<>(closedOnShutdown.get(), forced, cancelledWaiters,
+				Duration.ofNanos(System.nanoTime() - start));
+		logger.info(String.format("#### Shutdown completed: %s", report));
+
+		return report;
+	}
+
+	/**
+	 * @return number of slots reserved, being released or being created,
+	 * plus spares being created and retired resources not yet closed
+	 */
+	private int inFlight() {
+
+		int count = replenishing.get() + retiring.size();
+
+		for (int slot = 0; slot < states.length(); slot++) {
+			final int state = states.get(slot);
+			if (state == BUSY || state == RELEASING || state == RENEWING) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * It takes resource out of a slot, leaving the slot vacant. Caller must own the slot.
+	 *
+	 * @param slot is slot index
+	 *
+	 * @return the resource to be closed
+	 */
+	private T evict(final int slot) {
+
+		final T item = items.get(slot);
+		slots.remove(item);
+
+		leaveVacant(slot);
+		releaseCapacity();
+
+		return item;
+	}
+
+	/**
+	 * It gives back capacity of a closed resource to shared budget, if any
+	 */
+	private void releaseCapacity() {
+		if (sizing != null) {
+			sizing.releaseCapacity();
+		}
+	}
+
+	/**
+	 * It closes resources with bounded concurrency, waiting up to {@code CLOSE_TIMEOUT_SECONDS}
+	 *
+	 * @param toClose is list of resources
+	 */
+	private void closeInParallel(final List<T> toClose) {
+
+		if (toClose.isEmpty()) {
+			return;
+		}
+
+		final ExecutorService closer = Executors.newFixedThreadPool(
+				Math.min(toClose.size(), CLOSE_CONCURRENCY),
+				new MaintenanceThreadFactory("shutdown"));
+
+		toClose.forEach(item -> closer.execute(() -> dispose(item)));
+		closer.shutdown();
+
+		try {
+			if (!closer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				logger.error("XXXX Close of shareable items not completed in time.");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * It returns a snapshot of pool instrumentation
+	 *
+	 * @return an {@code ArbiterStats}
+	 */
+	public ArbiterStats getStats() {
+
+		int size = 0;
+		int idleSlots = 0;
+		int busy = 0;
+		int renewing = 0;
+
+		for (int slot = 0; slot < states.length(); slot++) {
+			switch (states.get(slot)) {
+			case IDLE:
+				idleSlots++;
+				size++;
+				break;
+			case BUSY:
+			case RELEASING:
+				busy++;
+				size++;
+				break;
+			case RENEWING:
+				renewing++;
+				break;
+			default:
+				break;
+			}
+		}
+
+		return new ArbiterStats(states.length(), size, idleSlots, busy, renewing, scheduler.waiterCount(), spares.size(),
+				hostAdmission != null && hostAdmission.isLimited(), metrics);
+	}
+
+	/**
+	 * It closes a retired resource, errors are only logged. Resources generated externally are not closed.
+	 *
+	 * @param item is the resource
+	 */
+	void dispose(final T item) {
+
+		if (factory == null) {
+			return;
+		}
+
+		try {
+			if (recyclePolicy != null) {
+				recyclePolicy.forget(item);
+			}
+			factory.closeResource(item);
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Error during close of shareable item -> %s", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Timer of asynchronous reservations shared by every arbiter, created on first use
+	 */
+	private static final class AsyncTimer {
+
+		private static final ScheduledExecutorService INSTANCE = createTimer();
+
+		private static ScheduledExecutorService createTimer() {
+			final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new MaintenanceThreadFactory("timeout"));
+			// reservations served in time don't leave their timeout queued
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+
+	/**
+	 * Thread factory for maintenance executor, threads are daemon to not hold JVM exit
+	 */
+	static final class MaintenanceThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOL_COUNTER = new AtomicInteger(0);
+
+		private final int poolIndex = POOL_COUNTER.incrementAndGet();
+
+		private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+		private final String role;
+
+		MaintenanceThreadFactory(final String inRole) {
+			role = inRole;
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable,
+					String.format("ResourceArbiter-%d-%s-%d", poolIndex, role, threadCounter.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Builder of {@code ResourceArbiter} based on {@code Factory}.
+	 *
+	 * @param <T> the type of handled resource
+	 */
+	public static final class Builder<T> {
+
+		/**
+		 * Logger
+		 */
+		private final Logger logger = LoggerFactory.getLogger("root");
+
+		private final Factory<T> factory;
+
+		private int size = 1;
+
+		private int maxIterations = Integer.MAX_VALUE;
+
+		private int spares = 0;
+
+		private int renewalThreads = 0;
+
+		private boolean renewalThreadsSet = false;
+
+		private int minIdle = 0;
+
+		private int maxTotal = 0;
+
+		private Duration idleTimeout = Duration.ZERO;
+
+		private int warmUpConcurrency = 1;
+
+		private boolean warmUpInBackground = false;
+
+		private ProgressListener progressListener = null;
+
+		private String jmxName = null;
+
+		private CapacityBudget budget = null;
+
+		private boolean validateOnBorrow = false;
+
+		private RecyclePolicy<? super T> recyclePolicy = null;
+
+		private double lifetimeJitter = 0.0;
+
+		private int maxConcurrentRenewals = 0;
+
+		private Duration maxHoldTime = Duration.ZERO;
+
+		private boolean leaseStackTraces = false;
+
+		private final List<int[]> lanes = new ArrayList<>();
+
+		private Duration validationInterval = Duration.ZERO;
+
+		private int shards = 1;
+
+		private HostAdmission hostAdmission = null;
+
+		private Builder(final Factory<T> inFactory) {
+			factory = inFactory;
+		}
+
+		/**
+		 * Number of element to placed into pool, initial size for an elastic pool
+		 *
+		 * @param nrElement is number of element
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> size(final int nrElement) {
+			size = requireNonNegative(nrElement, "size");
+			return this;
+		}
+
+		/**
+		 * Number of iteration each resource must serve before proceed with substitution
+		 *
+		 * @param inMaxIteration is number of iteration
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> maxIterations(final int inMaxIteration) {
+			if (inMaxIteration < 1) {
+				throw new IllegalArgumentException("maxIterations must be positive!");
+			}
+			maxIterations = inMaxIteration;
+			return this;
+		}
+
+		/**
+		 * Number of warm resources created in advance and swapped in as soon as a resource retires.
+		 * Spares enable background renewal.
+		 *
+		 * @param nrSpares is number of spares
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> spares(final int nrSpares) {
+			spares = requireNonNegative(nrSpares, "spares");
+			return this;
+		}
+
+		/**
+		 * Number of threads that renew exhausted resources off the caller thread.
+		 * Zero keeps renewal on the thread calling {@code free}. Spares, elastic size, validation,
+		 * max hold time, host admission and parallel warm up need at least one, {@code build} uses one
+		 * and logs it when zero was set.
+		 *
+		 * @param nrThreads is number of renewal threads
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> renewalThreads(final int nrThreads) {
+			renewalThreads = requireNonNegative(nrThreads, "renewalThreads");
+			renewalThreadsSet = true;
+			return this;
+		}
+
+		/**
+		 * Number of shards of idle resources. Each thread reserves from its own shard and steals
+		 * from the others only when it is empty, so hundreds of threads on many cores do not all
+		 * contend on a single stack. One shard, the default, keeps strict last in first out order.
+		 *
+		 * @param nrShards is number of shards, capped to pool capacity
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> shards(final int nrShards) {
+			if (nrShards < 1) {
+				throw new IllegalArgumentException("shards must be positive!");
+			}
+			shards = nrShards;
+			return this;
+		}
+
+		/**
+		 * Admission control of resource creation based on capacity of local host. A creation is delayed
+		 * while host is overloaded and fails when max wait of admission elapses, background creations retry later.
+		 * It needs renewal threads, so that a caller of {@code free} never waits for admission.
+		 *
+		 * @param admission is host admission, it can be shared with other arbiters
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> hostAdmission(final HostAdmission admission) {
+			hostAdmission = admission;
+			return this;
+		}
+
+		/**
+		 * Number of idle resources an elastic pool keeps ready. Initial size is at least this value.
+		 *
+		 * @param nrIdle is minimum number of idle resources
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> minIdle(final int nrIdle) {
+			minIdle = requireNonNegative(nrIdle, "minIdle");
+			return this;
+		}
+
+		/**
+		 * Max number of resources of an elastic pool. When set, pool grows through {@code Factory}
+		 * as long as demand exceeds idle resources.
+		 *
+		 * @param nrTotal is max number of resources
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> maxTotal(final int nrTotal) {
+			maxTotal = requireNonNegative(nrTotal, "maxTotal");
+			return this;
+		}
+
+		/**
+		 * Time after which an idle resource of an elastic pool is closed, as long as pool keeps minimum idle size.
+		 *
+		 * @param timeout is idle time to live, zero never shrinks
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> idleTimeout(final Duration timeout) {
+			if (timeout.isNegative()) {
+				throw new IllegalArgumentException("idleTimeout must not be negative!");
+			}
+			idleTimeout = timeout;
+			return this;
+		}
+
+		/**
+		 * Max number of initial resources created at same time. A failing creation is retried
+		 * and, if it keeps failing, pool starts with less resources while missing ones are
+		 * retried in background until pool reaches its size.
+		 *
+		 * @param concurrency is number of parallel creations, 1 creates resources one by one
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> warmUpConcurrency(final int concurrency) {
+			if (concurrency < 1) {
+				throw new IllegalArgumentException("warmUpConcurrency must be positive!");
+			}
+			warmUpConcurrency = concurrency;
+			return this;
+		}
+
+		/**
+		 * If true, {@code build} returns at once and initial resources are created in background.
+		 * Pool serves reservations as soon as first resources are ready.
+		 *
+		 * @param background is true to warm up in background
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> warmUpInBackground(final boolean background) {
+			warmUpInBackground = background;
+			return this;
+		}
+
+		/**
+		 * Listener notified at each initial resource creation
+		 *
+		 * @param listener is the progress listener
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> warmUpListener(final ProgressListener listener) {
+			progressListener = listener;
+			return this;
+		}
+
+		/**
+		 * If set, pool instrumentation is registered as MBean
+		 * {@code it.vinmar:type=ResourceArbiter,name=<jmxName>} into platform MBean server
+		 *
+		 * @param name is the MBean name
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> jmxName(final String name) {
+			jmxName = name;
+			return this;
+		}
+
+		/**
+		 * Capacity shared with other elastic pools
+		 *
+		 * @param inBudget is the shared budget
+		 *
+		 * @return this builder
+		 */
+		Builder<T> budget(final CapacityBudget inBudget) {
+			budget = inBudget;
+			return this;
+		}
+
+		/**
+		 * Random deviation of each resource lifetime from max iterations, e.g. 0.2 gives
+		 * lifetimes uniformly spread in [0.8, 1.2] times max iterations. Resources created
+		 * together at startup are then renewed at different times.
+		 *
+		 * @param jitter is max relative deviation, in [0, 1)
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> lifetimeJitter(final double jitter) {
+			if (jitter < 0.0 || jitter >= 1.0) {
+				throw new IllegalArgumentException("lifetimeJitter must be in [0, 1)!");
+			}
+			lifetimeJitter = jitter;
+			return this;
+		}
+
+		/**
+		 * Max number of renewals triggered by free in progress at same time. When reached,
+		 * an exhausted resource keeps serving and its renewal is retried at next free.
+		 *
+		 * @param max is max concurrent renewals, zero for no limit
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> maxConcurrentRenewals(final int max) {
+			if (max < 0) {
+				throw new IllegalArgumentException("maxConcurrentRenewals must not be negative!");
+			}
+			maxConcurrentRenewals = max;
+			return this;
+		}
+
+		/**
+		 * Retirement criterion asked each time a resource is freed, in addition to max iterations.
+		 * See {@code RecyclePolicy} for built-in criteria.
+		 *
+		 * @param policy is the recycle policy
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> recyclePolicy(final RecyclePolicy<? super T> policy) {
+			recyclePolicy = policy;
+			return this;
+		}
+
+		/**
+		 * If true, each resource is checked via {@code Factory.validate} before being reserved.
+		 * An invalid resource is renewed in background and another one is given to caller.
+		 *
+		 * @param validate is true to validate on borrow
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> validateOnBorrow(final boolean validate) {
+			validateOnBorrow = validate;
+			return this;
+		}
+
+		/**
+		 * Period of background check of idle resources via {@code Factory.validate}.
+		 * Invalid resources are renewed before any reservation meets them.
+		 *
+		 * @param interval is the period, zero disables background check
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> validationInterval(final Duration interval) {
+			if (interval.isNegative()) {
+				throw new IllegalArgumentException("validationInterval must not be negative!");
+			}
+			validationInterval = interval;
+			return this;
+		}
+
+		/**
+		 * Max time a {@code Lease} can be held. Resource of an overdue lease is reclaimed,
+		 * renewed and reported, so leaked reservations don't shrink the pool.
+		 *
+		 * @param holdTime is max hold time, zero disables reclamation
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> maxHoldTime(final Duration holdTime) {
+			if (holdTime.isNegative()) {
+				throw new IllegalArgumentException("maxHoldTime must not be negative!");
+			}
+			maxHoldTime = holdTime;
+			return this;
+		}
+
+		/**
+		 * If true, each {@code Lease} records call stack of its reservation, reported when it is reclaimed
+		 *
+		 * @param record is true to record call stacks
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> leaseStackTraces(final boolean record) {
+			leaseStackTraces = record;
+			return this;
+		}
+
+		/**
+		 * It adds a priority lane of waiting side, lanes are numbered in order of addition
+		 * starting from {@code DEFAULT_LANE}. Waiters of different lanes share freed resources
+		 * according to lane weight. Reserved capacity of a lane is not given to other lanes,
+		 * so its reservations get a resource within a bounded wait.
+		 * Without lanes every reservation belongs to a single FIFO lane.
+		 *
+		 * @param weight is share of freed resources given to lane when every lane is waiting
+		 * @param reserved is number of resources kept for lane
+		 *
+		 * @return this builder
+		 */
+		public Builder<T> lane(final int weight, final int reserved) {
+			if (weight < 1) {
+				throw new IllegalArgumentException("weight must be positive!");
+			}
+			lanes.add(new int[] { weight, requireNonNegative(reserved, "reserved") });
+			return this;
+		}
+
+		/**
+		 * It creates the configured arbiter and its resources
+		 *
+		 * @return a new {@code ResourceArbiter}
+		 */
+		public ResourceArbiter<T> build() {
+			final int reserved = lanes.stream().mapToInt(lane -> lane[1]).sum();
+			if (reserved > 0 && reserved >= Math.max(Math.max(size, minIdle), maxTotal)) {
+				throw new IllegalArgumentException("Reserved capacity of lanes must be lower than pool size!");
+			}
+			// a failed creation must not hit a reserving caller nor leave the slot out of service
+			final String need = maintenanceNeed();
+			if (need != null && renewalThreads == 0) {
+				if (renewalThreadsSet) {
+					logger.warn(String.format("XXXX renewalThreads 0 overridden to 1, %s needs background maintenance", need));
+				}
+				renewalThreads = 1;
+			}
+			return new ResourceArbiter<>(this, null);
+		}
+
+		/**
+		 * @return first configured option that runs on maintenance executor, null if none
+		 */
+		private String maintenanceNeed() {
+
+			if (spares > 0) {
+				return "spares";
+			}
+			if (maxTotal > 0) {
+				return "maxTotal";
+			}
+			if (validateOnBorrow) {
+				return "validateOnBorrow";
+			}
+			if (!validationInterval.isZero()) {
+				return "validationInterval";
+			}
+			if (!maxHoldTime.isZero()) {
+				return "maxHoldTime";
+			}
+			if (hostAdmission != null) {
+				return "hostAdmission";
+			}
+			if (warmUpConcurrency > 1) {
+				return "warmUpConcurrency";
+			}
+			if (warmUpInBackground) {
+				return "warmUpInBackground";
+			}
+
+			return null;
+		}
+
+		private static int requireNonNegative(final int value, final String name) {
+			if (value < 0) {
+				throw new IllegalArgumentException(String.format("%s must not be negative!", name));
+			}
+			return value;
 		}
 	}
 }
@@ -0,0 +1,72 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@code ResourceArbiter.shutdown}
+ *
+ * @param <T> the type of handled resource
+ */
+public final class ShutdownReport<T> {
+
+	private final int closed;
+	private final List<T> forceClosed;
+	private final int cancelledWaiters;
+	private final Duration elapsed;
+
+	ShutdownReport(
+			final int inClosed,
+			final List<T> inForceClosed,
+			final int inCancelledWaiters,
+			final Duration inElapsed) {
+		closed = inClosed;
+		forceClosed = Collections.unmodifiableList(inForceClosed);
+		cancelledWaiters = inCancelledWaiters;
+		elapsed = inElapsed;
+	}
+
+	/**
+	 * @return number of resources closed while idle, freed within grace period or retired and not yet closed
+	 */
+	public int getClosed() {
+		return closed;
+	}
+
+	/**
+	 * Resources still reserved when grace period elapsed, closed while in use
+	 *
+	 * @return {@code List} of resources
+	 */
+	public List<T> getForceClosed() {
+		return forceClosed;
+	}
+
+	/**
+	 * @return number of queued reservations failed by shutdown
+	 */
+	public int getCancelledWaiters() {
+		return cancelledWaiters;
+	}
+
+	/**
+	 * @return time taken by shutdown
+	 */
+	public Duration getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * @return true if every resource was given back within grace period
+	 */
+	public boolean isClean() {
+		return forceClosed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("closed=%d forceClosed=%d cancelledWaiters=%d elapsed=%d ms",
+				closed, forceClosed.size(), cancelledWaiters, elapsed.toMillis());
+	}
+}
@@ -0,0 +1,89 @@
+package it.vinmar;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free LIFO stack of slot indexes in range [0, capacity).
+ * Links are kept into a primitive array so push and pop never allocate.
+ * Head is stamped at each update to avoid ABA problem.
+ */
+final class SlotStack {
+
+	/**
+	 * Marker of empty stack and of last element
+	 */
+	static final int EMPTY = -1;
+
+	/**
+	 * For each slot the index of slot below it
+	 */
+	private final AtomicIntegerArray next;
+
+	/**
+	 * Stamp in high 32 bits, top slot index in low 32 bits
+	 */
+	private final AtomicLong head = new AtomicLong(pack(0, EMPTY));
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity is the max number of slots
+	 */
+	SlotStack(final int capacity) {
+		next = new AtomicIntegerArray(capacity);
+	}
+
+	/**
+	 * It pushes a slot, slot must not be already into the stack
+	 *
+	 * @param slot is the slot index
+	 */
+	void push(final int slot) {
+
+		long current;
+		do {
+			current = head.get();
+			next.set(slot, index(current));
+		} while (!head.compareAndSet(current, pack(stamp(current) + 1, slot)));
+	}
+
+	/**
+	 * It pops last pushed slot
+	 *
+	 * @return slot index or {@code EMPTY}
+	 */
+	int pop() {
+
+		long current;
+		int top;
+		do {
+			current = head.get();
+			top = index(current);
+			if (top == EMPTY) {
+				return EMPTY;
+			}
+		} while (!head.compareAndSet(current, pack(stamp(current) + 1, next.get(top))));
+
+		return top;
+	}
+
+	/**
+	 * @return true if no slot is into the stack
+	 */
+	boolean isEmpty() {
+		return index(head.get()) == EMPTY;
+	}
+
+	private static long pack(final int stamp, final int index) {
+		return ((long) stamp << 32) | (index & 0xFFFFFFFFL);
+	}
+
+	private static int stamp(final long value) {
+		return (int) (value >>> 32);
+	}
+
+	private static int index(final long value) {
+		return (int) value;
+	}
+}
@@ -0,0 +1,72 @@
+package it.vinmar;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registration of {@code ResourceArbiter} instrumentation into platform MBean server
+ */
+final class StatsRegistry {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger("root");
+
+	private StatsRegistry() {
+	}
+
+	/**
+	 * It registers a live view of arbiter stats into platform MBean server
+	 *
+	 * @param name is value of name key into {@code ObjectName}
+	 * @param stats gives a fresh snapshot of arbiter stats
+	 *
+	 * @return registered {@code ObjectName} or null on failure
+	 */
+	static ObjectName register(final String name, final Supplier<ArbiterStats> stats) {
+
+		// each attribute read takes a fresh snapshot
+		final ArbiterStatsMXBean live = (ArbiterStatsMXBean) Proxy.newProxyInstance(
+				ArbiterStatsMXBean.class.getClassLoader(),
+				new Class<?>[] { ArbiterStatsMXBean.class },
+				(proxy, method, args) -> method.invoke(stats.get(), args));
+
+		try {
+			final ObjectName objectName = new ObjectName(
+					String.format("it.vinmar:type=ResourceArbiter,name=%s", ObjectName.quote(name)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(live, objectName);
+			logger.info(String.format("#### Registered MBean %s", objectName));
+			return objectName;
+		} catch (final JMException e) {
+			logger.error(String.format("XXXX Error during MBean registration -> %s", e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * It removes a registered MBean
+	 *
+	 * @param objectName is registered {@code ObjectName}, null if not registered
+	 */
+	static void unregister(final ObjectName objectName) {
+
+		if (objectName == null) {
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			logger.info(String.format("#### Unregistered MBean %s", objectName));
+		} catch (final JMException e) {
+			logger.error(String.format("XXXX Error during MBean unregistration -> %s", e.getMessage()));
+		}
+	}
+}
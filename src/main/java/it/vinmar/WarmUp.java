@@ -0,0 +1,198 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.vinmar.ResourceArbiter.MaintenanceThreadFactory;
+import it.vinmar.ResourceArbiter.ProgressListener;
+
+/**
+ * Creation of initial resources of a {@code ResourceArbiter} and tracking of its progress
+ *
+ * @param <T> the type of handled resource
+ */
+final class WarmUp<T> {
+
+	/**
+	 * Number of attempts to create each resource during parallel warm up
+	 */
+	private static final int ATTEMPTS = 3;
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = LoggerFactory.getLogger("root");
+
+	/**
+	 * Arbiter owning slots
+	 */
+	private final ResourceArbiter<T> arbiter;
+
+	/**
+	 * Number of initial resources
+	 */
+	private final int total;
+
+	/**
+	 * Listener of warm up progress, if any
+	 */
+	private final ProgressListener listener;
+
+	/**
+	 * It is released when every initial resource is created or left to background retry
+	 */
+	private final CountDownLatch done;
+
+	/**
+	 * Number of initial resources created
+	 */
+	private final AtomicInteger ready = new AtomicInteger(0);
+
+	/**
+	 * Number of initial resources left to background retry
+	 */
+	private final AtomicInteger failed = new AtomicInteger(0);
+
+	/**
+	 * @param inArbiter is arbiter owning slots
+	 * @param inTotal is number of initial resources, they take first slots
+	 * @param inListener is listener of warm up progress, null if none
+	 */
+	WarmUp(final ResourceArbiter<T> inArbiter, final int inTotal, final ProgressListener inListener) {
+		arbiter = inArbiter;
+		total = inTotal;
+		listener = inListener;
+		done = new CountDownLatch(inTotal);
+	}
+
+	/**
+	 * It creates initial resources with bounded concurrency. Each resource is released as soon as it is ready,
+	 * so reservations are served before warm up completion.
+	 *
+	 * @param concurrency is max number of resources created at same time
+	 * @param background is true to return without waiting warm up completion
+	 */
+	void runInParallel(final int concurrency, final boolean background) {
+
+		for (int slot = 0; slot < total; slot++) {
+			arbiter.takeOutOfService(slot);
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(concurrency, total)),
+				new MaintenanceThreadFactory("warmup"));
+
+		for (int index = 0; index < total; index++) {
+			final int slot = index;
+			executor.execute(() -> createSlot(slot));
+		}
+		executor.shutdown();
+
+		if (!background) {
+			try {
+				done.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted during warm up!", e);
+			}
+
+			if (total > 0 && ready.get() == 0) {
+				// arbiter is never returned, background retries are stopped
+				arbiter.abort();
+				throw new IllegalStateException("No resource created during warm up!");
+			}
+		}
+	}
+
+	/**
+	 * It creates an initial resource, retrying on failure. A slot still empty after every attempt
+	 * is handed to maintenance executor, which keeps retrying in background as for a failed renewal,
+	 * so a transient outage does not shrink the pool for good.
+	 *
+	 * @param slot is slot index
+	 */
+	private void createSlot(final int slot) {
+
+		try {
+			for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+				try {
+					arbiter.fill(slot);
+					report(ready.incrementAndGet(), failed.get());
+					return;
+				} catch (final RuntimeException e) {
+					logger.error(String.format("XXXX Error during warm up, attempt %d of %d -> %s",
+							attempt, ATTEMPTS, e.getMessage()));
+				}
+
+				if (arbiter.isShutdown()) {
+					break;
+				}
+
+				if (attempt < ATTEMPTS) {
+					try {
+						TimeUnit.SECONDS.sleep(ResourceArbiter.RETRY_DELAY_SECONDS);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+
+			report(ready.get(), failed.incrementAndGet());
+			arbiter.retryInBackground(slot);
+		} finally {
+			done.countDown();
+		}
+	}
+
+	/**
+	 * It records an initial resource created by caller thread
+	 *
+	 * @param nrReady is number of resources ready so far
+	 */
+	void created(final int nrReady) {
+		report(nrReady, 0);
+	}
+
+	/**
+	 * It records an initial resource made available
+	 */
+	void installed() {
+		done.countDown();
+	}
+
+	/**
+	 * It logs warm up progress and notifies listener
+	 *
+	 * @param nrReady is number of resources ready so far
+	 * @param nrFailed is number of resources left to background retry
+	 */
+	private void report(final int nrReady, final int nrFailed) {
+
+		logger.info(String.format("#### Warm up of shareable items %d/%d (%d failed)", nrReady, total, nrFailed));
+
+		if (listener != null) {
+			listener.onProgress(nrReady, nrFailed, total);
+		}
+	}
+
+	/**
+	 * It waits until every initial resource is created or left to background retry
+	 *
+	 * @param timeout is max time to wait
+	 *
+	 * @return true if warm up is completed
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	boolean await(final Duration timeout) throws InterruptedException {
+		return done.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+	}
+}
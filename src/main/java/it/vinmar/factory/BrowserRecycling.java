@@ -0,0 +1,211 @@
+package it.vinmar.factory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.vinmar.RecyclePolicy;
+
+/**
+ * Recycle policies that read browser health through the driver itself.
+ * They can be combined with generic ones, e.g.
+ * {@code RecyclePolicy.<WebDriver>maxAge(Duration.ofMinutes(10)).or(BrowserRecycling.maxJsHeap(512 << 20))}.
+ */
+public final class BrowserRecycling {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger("root");
+
+	/**
+	 * Used JS heap of current page, only Chromium based browsers expose it
+	 */
+	private static final String JS_HEAP_SCRIPT =
+			"return window.performance && performance.memory ? performance.memory.usedJSHeapSize : null;";
+
+	/**
+	 * Start and duration of last completed page load
+	 */
+	private static final String PAGE_LOAD_SCRIPT =
+			"var t = window.performance && performance.timing;"
+			+ " return t && t.loadEventEnd > 0 ? [t.navigationStart, t.loadEventEnd - t.navigationStart] : null;";
+
+	private BrowserRecycling() {
+		// only static methods
+	}
+
+	/**
+	 * Policy retiring a browser whose page uses more JS heap than threshold.
+	 * Browsers not exposing {@code performance.memory} are never retired by this policy.
+	 *
+	 * @param maxBytes is max used JS heap size in bytes
+	 *
+	 * @return the policy
+	 */
+	public static RecyclePolicy<WebDriver> maxJsHeap(final long maxBytes) {
+
+		if (maxBytes <= 0L) {
+			throw new IllegalArgumentException("maxBytes must be positive!");
+		}
+
+		return (driver, uses, age) -> {
+			final Object heap = execute(driver, JS_HEAP_SCRIPT);
+			return heap instanceof Number && ((Number) heap).longValue() > maxBytes;
+		};
+	}
+
+	/**
+	 * Policy retiring a browser that got slow. First page loads of each browser make its baseline,
+	 * browser is retired when mean of most recent page loads exceeds baseline mean by given factor.
+	 *
+	 * @param baselineSamples is number of first page loads averaged as baseline
+	 * @param recentSamples is number of most recent page loads compared with baseline
+	 * @param maxSlowdown is tolerated ratio between recent and baseline mean, e.g. 2.0
+	 *
+	 * @return the policy
+	 */
+	public static RecyclePolicy<WebDriver> latencyDegradation(
+			final int baselineSamples,
+			final int recentSamples,
+			final double maxSlowdown) {
+
+		if (baselineSamples <= 0 || recentSamples <= 0) {
+			throw new IllegalArgumentException("Number of samples must be positive!");
+		}
+		if (maxSlowdown <= 1.0) {
+			throw new IllegalArgumentException("maxSlowdown must be greater than 1!");
+		}
+
+		return new LatencyDegradation(baselineSamples, recentSamples, maxSlowdown);
+	}
+
+	/**
+	 * It runs a probe script, a browser unable to answer is not judged here
+	 *
+	 * @param driver is the browser
+	 * @param script is the probe
+	 *
+	 * @return script result or null
+	 */
+	private static Object execute(final WebDriver driver, final String script) {
+
+		if (!(driver instanceof JavascriptExecutor)) {
+			return null;
+		}
+
+		try {
+			return ((JavascriptExecutor) driver).executeScript(script);
+		} catch (final WebDriverException e) {
+			logger.warn(String.format("#### Unable to probe driver -> %s", e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Per driver comparison of recent page load times against early ones
+	 */
+	private static final class LatencyDegradation implements RecyclePolicy<WebDriver> {
+
+		private final int baselineSamples;
+		private final int recentSamples;
+		private final double maxSlowdown;
+
+		private final Map<WebDriver, History> histories = new ConcurrentHashMap<>();
+
+		LatencyDegradation(final int inBaselineSamples, final int inRecentSamples, final double inMaxSlowdown) {
+			baselineSamples = inBaselineSamples;
+			recentSamples = inRecentSamples;
+			maxSlowdown = inMaxSlowdown;
+		}
+
+		@Override
+		public boolean shouldRecycle(final WebDriver driver, final long uses, final Duration age) {
+
+			final Object timing = execute(driver, PAGE_LOAD_SCRIPT);
+			if (!(timing instanceof List) || ((List<?>) timing).size() != 2) {
+				return false;
+			}
+
+			final List<?> values = (List<?>) timing;
+			final long navigationStart = ((Number) values.get(0)).longValue();
+			final long loadMillis = ((Number) values.get(1)).longValue();
+
+			final History history = histories.computeIfAbsent(driver, key -> new History());
+
+			// a driver is used by one thread at a time, lock is uncontended
+			synchronized (history) {
+				return history.add(navigationStart, loadMillis);
+			}
+		}
+
+		@Override
+		public void forget(final WebDriver driver) {
+			histories.remove(driver);
+		}
+
+		/**
+		 * Page load samples of a single driver
+		 */
+		private final class History {
+
+			private long lastNavigationStart = -1L;
+
+			private long baselineSum = 0L;
+
+			private int baselineCount = 0;
+
+			private final Deque<Long> recent = new ArrayDeque<>();
+
+			private long recentSum = 0L;
+
+			/**
+			 * It adds a sample, same page seen twice is counted once
+			 *
+			 * @return true if driver is degraded
+			 */
+			boolean add(final long navigationStart, final long loadMillis) {
+
+				if (navigationStart == lastNavigationStart) {
+					return false;
+				}
+				lastNavigationStart = navigationStart;
+
+				if (baselineCount < baselineSamples) {
+					baselineSum += loadMillis;
+					baselineCount++;
+					return false;
+				}
+
+				recent.addLast(loadMillis);
+				recentSum += loadMillis;
+				if (recent.size() > recentSamples) {
+					recentSum -= recent.removeFirst();
+				}
+
+				if (recent.size() < recentSamples) {
+					return false;
+				}
+
+				final double baselineMean = Math.max(1.0, baselineSum / (double) baselineCount);
+				final double recentMean = recentSum / (double) recentSamples;
+
+				if (recentMean > baselineMean * maxSlowdown) {
+					logger.info(String.format("#### Driver degraded, page load %.0fms against baseline %.0fms",
+							recentMean, baselineMean));
+					return true;
+				}
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package it.vinmar.factory;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * It spreads new sessions over multiple Selenium Grid endpoints.
+ * An endpoint failing session creation is quarantined and skipped
+ * for a while, quarantine doubles on consecutive failures.
+ */
+public final class GridRouter {
+
+	/**
+	 * This {@code enum} defines supported routing strategies
+	 */
+	public enum Routing {
+		/**
+		 * Endpoints are used in turn
+		 */
+		ROUND_ROBIN,
+		/**
+		 * Endpoint with fewest open sessions is used
+		 */
+		LEAST_OUTSTANDING,
+		/**
+		 * Endpoint with lowest recent session creation time is used, one session out of
+		 * {@code PROBE_INTERVAL} goes to endpoint measured least recently
+		 */
+		LOWEST_LATENCY
+	}
+
+	/**
+	 * Routing among endpoints when not configured
+	 */
+	public static final Routing DEFAULT_ROUTING = Routing.LEAST_OUTSTANDING;
+
+	/**
+	 * Quarantine of a failing endpoint when not configured
+	 */
+	public static final Duration DEFAULT_QUARANTINE = Duration.ofSeconds(30);
+
+	/**
+	 * Weight of last sample into session creation time average
+	 */
+	private static final double LATENCY_WEIGHT = 0.3;
+
+	/**
+	 * Sessions between two probes of lowest latency routing, so an endpoint with
+	 * a slow sample is measured again instead of being starved for the rest of the run
+	 */
+	public static final int PROBE_INTERVAL = 20;
+
+	/**
+	 * Max multiplier of quarantine on consecutive failures
+	 */
+	private static final int MAX_BACKOFF = 8;
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = LoggerFactory.getLogger("root");
+
+	private final List<Endpoint> endpoints;
+
+	private final Routing routing;
+
+	private final long quarantineNanos;
+
+	/**
+	 * Rotating start of endpoint scan, it spreads ties
+	 */
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	/**
+	 * Number of selections of lowest latency routing, it schedules probes
+	 */
+	private final AtomicInteger selections = new AtomicInteger(0);
+
+	/**
+	 * Endpoint serving each open session
+	 */
+	private final Map<Object, Endpoint> sessions = new ConcurrentHashMap<>();
+
+	/**
+	 * Router constructor
+	 *
+	 * @param urls is list of grid endpoints
+	 * @param inRouting is routing strategy
+	 * @param quarantine is time a failing endpoint is skipped
+	 */
+	public GridRouter(final List<URL> urls, final Routing inRouting, final Duration quarantine) {
+
+		if (urls.isEmpty()) {
+			throw new IllegalArgumentException("At least one grid endpoint is necessary!");
+		}
+
+		final List<Endpoint> list = new ArrayList<>(urls.size());
+		urls.forEach(url -> list.add(new Endpoint(url)));
+
+		endpoints = Collections.unmodifiableList(list);
+		routing = inRouting;
+		quarantineNanos = quarantine.toNanos();
+	}
+
+	/**
+	 * It opens a session on selected endpoint. When creation fails endpoint is quarantined
+	 * and next selected endpoint is tried, up to one attempt per endpoint.
+	 *
+	 * @param <T> is session type
+	 * @param sessionFactory creates a session on given endpoint
+	 *
+	 * @return opened session
+	 */
+	public <T> T open(final Function<URL, T> sessionFactory) {
+
+		RuntimeException failure = null;
+
+		for (int attempt = 0; attempt < endpoints.size(); attempt++) {
+
+			final Endpoint endpoint = select();
+			endpoint.outstanding.incrementAndGet();
+
+			final long start = System.nanoTime();
+			try {
+				final T resp = sessionFactory.apply(endpoint.url);
+
+				endpoint.succeeded(System.nanoTime() - start);
+				sessions.put(resp, endpoint);
+
+				return resp;
+
+			} catch (final RuntimeException e) {
+				endpoint.outstanding.decrementAndGet();
+				endpoint.failed(quarantineNanos);
+
+				logger.warn(String.format("#### Selenium Grid %s failed -> %s", endpoint.url, e.getMessage()));
+				failure = e;
+			}
+		}
+
+		throw failure;
+	}
+
+	/**
+	 * It tracks closure of a session opened by this router
+	 *
+	 * @param session is the closed session
+	 */
+	public void release(final Object session) {
+
+		final Endpoint endpoint = sessions.remove(session);
+
+		if (endpoint != null) {
+			endpoint.outstanding.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return list of endpoints
+	 */
+	public List<URL> getEndpoints() {
+		return endpoints.stream().map(endpoint -> endpoint.url).collect(Collectors.toList());
+	}
+
+	/**
+	 * It selects endpoint of next session according to routing strategy, skipping quarantined ones
+	 *
+	 * @return selected endpoint
+	 */
+	private Endpoint select() {
+
+		final long now = System.nanoTime();
+		final int size = endpoints.size();
+		final int start = Math.floorMod(cursor.getAndIncrement(), size);
+
+		final boolean probe = routing == Routing.LOWEST_LATENCY
+				&& selections.incrementAndGet() % PROBE_INTERVAL == 0;
+
+		Endpoint best = null;
+
+		for (int index = 0; index < size; index++) {
+
+			final Endpoint candidate = endpoints.get((start + index) % size);
+
+			if (!candidate.isHealthy(now)) {
+				continue;
+			}
+			if (routing == Routing.ROUND_ROBIN) {
+				return candidate;
+			}
+			if (probe) {
+				if (best == null || candidate.measuredAt - best.measuredAt < 0L) {
+					best = candidate;
+				}
+			} else if (best == null || isBetter(candidate, best)) {
+				best = candidate;
+			}
+		}
+
+		if (best != null) {
+			return best;
+		}
+
+		// every endpoint is quarantined, try the one closest to recovery
+		return endpoints.stream()
+				.min(Comparator.comparingLong(endpoint -> endpoint.quarantinedUntil - now))
+				.get();
+	}
+
+	private boolean isBetter(final Endpoint candidate, final Endpoint best) {
+
+		if (routing == Routing.LOWEST_LATENCY && candidate.latencyNanos != best.latencyNanos) {
+			return candidate.latencyNanos < best.latencyNanos;
+		}
+
+		return candidate.outstanding.get() < best.outstanding.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s", routing, getEndpoints());
+	}
+
+	/**
+	 * Health and load of a single grid endpoint
+	 */
+	private static final class Endpoint {
+
+		private final URL url;
+
+		private final AtomicInteger outstanding = new AtomicInteger(0);
+
+		/**
+		 * Moving average of session creation time, zero until first session
+		 */
+		private volatile double latencyNanos = 0.0;
+
+		/**
+		 * {@code System.nanoTime} of last session creation time sample
+		 */
+		private volatile long measuredAt = System.nanoTime();
+
+		private volatile boolean quarantined = false;
+
+		private volatile long quarantinedUntil = 0L;
+
+		private int consecutiveFailures = 0;
+
+		Endpoint(final URL inUrl) {
+			url = inUrl;
+		}
+
+		boolean isHealthy(final long now) {
+			return !quarantined || now - quarantinedUntil >= 0L;
+		}
+
+		synchronized void succeeded(final long nanos) {
+
+			latencyNanos = latencyNanos == 0.0
+					? nanos
+					: LATENCY_WEIGHT * nanos + (1.0 - LATENCY_WEIGHT) * latencyNanos;
+			measuredAt = System.nanoTime();
+
+			consecutiveFailures = 0;
+			quarantined = false;
+		}
+
+		synchronized void failed(final long quarantineNanos) {
+
+			consecutiveFailures++;
+
+			final int backoff = Math.min(MAX_BACKOFF, 1 << Math.min(consecutiveFailures - 1, 30));
+			quarantinedUntil = System.nanoTime() + quarantineNanos * backoff;
+			quarantined = true;
+		}
+	}
+}
@@ -2,7 +2,19 @@ package it.vinmar.factory;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.openqa.selenium.PageLoadStrategy;
+
+import it.vinmar.factory.GridRouter.Routing;
 
 /**
  * This object aggregates each configuration that can be
@@ -18,9 +30,16 @@ public final class WebDriverConf {
 	}
 
 	private final WebBrowser webBrowser;
-	private final Optional<URL> grid;
+	private final List<URL> grids;
+	private final Routing gridRouting;
 	private final Optional<String> proxy;
 	private final Optional<String> noProxy;
+	private final Optional<PageLoadStrategy> pageLoadStrategy;
+	private final boolean blockImages;
+	private final boolean muteMedia;
+	private final List<String> blockedHosts;
+	private final Optional<Duration> pageLoadTimeout;
+	private final Optional<Duration> scriptTimeout;
 
 	/**
 	 * WebBrowser enum instance
@@ -32,12 +51,30 @@ public final class WebDriverConf {
 	}
 
 	/**
-	 * Url Selenium Grid
+	 * Url Selenium Grid, first one when multiple endpoints are configured
 	 *
 	 * @return {@code Optional} of {@code URL}
 	 */
 	public Optional<URL> getGrid() {
-		return grid;
+		return grids.stream().findFirst();
+	}
+
+	/**
+	 * Urls of every Selenium Grid endpoint
+	 *
+	 * @return {@code List} of {@code URL}, empty if no grid is used
+	 */
+	public List<URL> getGrids() {
+		return grids;
+	}
+
+	/**
+	 * Routing of new sessions among Selenium Grid endpoints
+	 *
+	 * @return {@code Routing} value
+	 */
+	public Routing getGridRouting() {
+		return gridRouting;
 	}
 
 	/**
@@ -58,25 +95,225 @@ public final class WebDriverConf {
 		return noProxy;
 	}
 
+	/**
+	 * Page load strategy, driver default is {@code NORMAL} that waits for load event
+	 *
+	 * @return {@code Optional} of {@code PageLoadStrategy}
+	 */
+	public Optional<PageLoadStrategy> getPageLoadStrategy() {
+		return pageLoadStrategy;
+	}
+
+	/**
+	 * @return true if images are not downloaded
+	 */
+	public boolean isBlockImages() {
+		return blockImages;
+	}
+
+	/**
+	 * @return true if audio is muted and video does not play by itself, media is still downloaded
+	 */
+	public boolean isMuteMedia() {
+		return muteMedia;
+	}
+
+	/**
+	 * Hosts browser cannot reach by name, e.g. analytics and ads
+	 *
+	 * @return {@code List} of host names, empty if nothing is blocked
+	 */
+	public List<String> getBlockedHosts() {
+		return blockedHosts;
+	}
+
+	/**
+	 * Max time of a page load before navigation fails
+	 *
+	 * @return {@code Optional} of {@code Duration}, driver default if empty
+	 */
+	public Optional<Duration> getPageLoadTimeout() {
+		return pageLoadTimeout;
+	}
+
+	/**
+	 * Max time of an asynchronous script
+	 *
+	 * @return {@code Optional} of {@code Duration}, driver default if empty
+	 */
+	public Optional<Duration> getScriptTimeout() {
+		return scriptTimeout;
+	}
+
+	/**
+	 * It copies configuration with a page load strategy.
+	 * {@code eager} returns when DOM is ready, {@code none} as soon as navigation starts.
+	 *
+	 * @param strategy is one of {@code normal}, {@code eager} or {@code none}
+	 *
+	 * @return a new {@code WebDriverConf}
+	 */
+	public WebDriverConf withPageLoadStrategy(final String strategy) {
+
+		final PageLoadStrategy value = PageLoadStrategy.fromString(strategy.trim().toLowerCase(Locale.ROOT));
+		if (value == null) {
+			throw new IllegalArgumentException(String.format("Unknown page load strategy %s!", strategy));
+		}
+
+		return new WebDriverConf(this, Optional.of(value), blockImages, muteMedia, blockedHosts, pageLoadTimeout, scriptTimeout);
+	}
+
+	/**
+	 * It copies configuration with or without image download
+	 *
+	 * @param block is true to skip images
+	 *
+	 * @return a new {@code WebDriverConf}
+	 */
+	public WebDriverConf withBlockImages(final boolean block) {
+		return new WebDriverConf(this, pageLoadStrategy, block, muteMedia, blockedHosts, pageLoadTimeout, scriptTimeout);
+	}
+
+	/**
+	 * It copies configuration with or without muted audio and video autoplay.
+	 * Media elements are still downloaded, only their playback is prevented.
+	 *
+	 * @param mute is true to mute audio and stop autoplay
+	 *
+	 * @return a new {@code WebDriverConf}
+	 */
+	public WebDriverConf withMuteMedia(final boolean mute) {
+		return new WebDriverConf(this, pageLoadStrategy, blockImages, mute, blockedHosts, pageLoadTimeout, scriptTimeout);
+	}
+
+	/**
+	 * It copies configuration with hosts blocked at name resolution. Chrome fails to resolve them
+	 * and accepts wildcards like {@code *.doubleclick.net}. Firefox accepts only exact host names
+	 * and resolves them to localhost, so requests still go to a local port and fail there.
+	 * It has no effect on hosts reached through proxy.
+	 *
+	 * @param hosts is comma separated list of host names
+	 *
+	 * @return a new {@code WebDriverConf}
+	 */
+	public WebDriverConf withBlockedHosts(final String hosts) {
+
+		final List<String> list = hosts == null
+				? Collections.emptyList()
+				: Collections.unmodifiableList(Arrays.stream(hosts.split(","))
+						.map(String::trim)
+						.filter(host -> !host.isEmpty())
+						.collect(Collectors.toList()));
+
+		return new WebDriverConf(this, pageLoadStrategy, blockImages, muteMedia, list, pageLoadTimeout, scriptTimeout);
+	}
+
+	/**
+	 * It copies configuration with a page load timeout
+	 *
+	 * @param timeout is max time of a page load
+	 *
+	 * @return a new {@code WebDriverConf}
+	 */
+	public WebDriverConf withPageLoadTimeout(final Duration timeout) {
+		return new WebDriverConf(this, pageLoadStrategy, blockImages, muteMedia, blockedHosts, Optional.of(requirePositive(timeout, "pageLoadTimeout")), scriptTimeout);
+	}
+
+	/**
+	 * It copies configuration with an asynchronous script timeout
+	 *
+	 * @param timeout is max time of an asynchronous script
+	 *
+	 * @return a new {@code WebDriverConf}
+	 */
+	public WebDriverConf withScriptTimeout(final Duration timeout) {
+		return new WebDriverConf(this, pageLoadStrategy, blockImages, muteMedia, blockedHosts, pageLoadTimeout, Optional.of(requirePositive(timeout, "scriptTimeout")));
+	}
+
+	private static Duration requirePositive(final Duration value, final String name) {
+		if (value.isZero() || value.isNegative()) {
+			throw new IllegalArgumentException(String.format("%s must be positive!", name));
+		}
+		return value;
+	}
+
+	/**
+	 * Complete constructor
+	 *
+	 * @param webBrowserString is a {@code WebBrowser} value
+	 * @param gridUrl is comma separated list of Selenium Grid urls, malformed ones are ignored
+	 * @param proxyString is proxy in &lt;host&gt;:&lt;port&gt; format
+	 * @param noProxyString is comma separated list of "no proxy" hosts
+	 * @param gridRoutingString is a {@code Routing} value, null for {@code GridRouter.DEFAULT_ROUTING}
+	 */
 	public WebDriverConf(
 			final String webBrowserString,
 			final String gridUrl,
 			final String proxyString,
-			final String noProxyString) {
+			final String noProxyString,
+			final String gridRoutingString) {
 
 		webBrowser = WebBrowser.valueOf(webBrowserString);
 
-		URL url = null;
-		try {
-			url = new URL(gridUrl);
-		} catch (final MalformedURLException e) {
-			url = null;
-		} finally {
-			grid = Optional.ofNullable(url);
+		final List<URL> urls = new ArrayList<>();
+		if (gridUrl != null) {
+			for (final String token : gridUrl.split(",")) {
+				try {
+					urls.add(new URL(token.trim()));
+				} catch (final MalformedURLException e) {
+					// not a grid url
+				}
+			}
 		}
+		grids = Collections.unmodifiableList(urls);
+
+		gridRouting = gridRoutingString != null
+				? Routing.valueOf(gridRoutingString)
+				: GridRouter.DEFAULT_ROUTING;
 
 		proxy = Optional.ofNullable(proxyString);
 		noProxy = Optional.ofNullable(noProxyString);
+
+		pageLoadStrategy = Optional.empty();
+		blockImages = false;
+		muteMedia = false;
+		blockedHosts = Collections.emptyList();
+		pageLoadTimeout = Optional.empty();
+		scriptTimeout = Optional.empty();
+	}
+
+	/**
+	 * Copy constructor used by {@code with} methods, page loading options are replaced
+	 */
+	private WebDriverConf(
+			final WebDriverConf base,
+			final Optional<PageLoadStrategy> inPageLoadStrategy,
+			final boolean inBlockImages,
+			final boolean inMuteMedia,
+			final List<String> inBlockedHosts,
+			final Optional<Duration> inPageLoadTimeout,
+			final Optional<Duration> inScriptTimeout) {
+
+		webBrowser = base.webBrowser;
+		grids = base.grids;
+		gridRouting = base.gridRouting;
+		proxy = base.proxy;
+		noProxy = base.noProxy;
+
+		pageLoadStrategy = inPageLoadStrategy;
+		blockImages = inBlockImages;
+		muteMedia = inMuteMedia;
+		blockedHosts = inBlockedHosts;
+		pageLoadTimeout = inPageLoadTimeout;
+		scriptTimeout = inScriptTimeout;
+	}
+
+	public WebDriverConf(
+			final String webBrowserString,
+			final String gridUrl,
+			final String proxyString,
+			final String noProxyString) {
+		this(webBrowserString, gridUrl, proxyString, noProxyString, null);
 	}
 
 	public WebDriverConf(
@@ -95,4 +332,51 @@ public final class WebDriverConf {
 	public WebDriverConf(final String webBrowserString) {
 		this(webBrowserString, null, null, null);
 	}
+
+	/**
+	 * Grid urls are compared by text, {@code URL.equals} would resolve host names
+	 *
+	 * @return grid urls as text
+	 */
+	private List<String> gridForms() {
+		return grids.stream().map(URL::toExternalForm).collect(Collectors.toList());
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof WebDriverConf)) {
+			return false;
+		}
+
+		final WebDriverConf that = (WebDriverConf) other;
+
+		return webBrowser == that.webBrowser
+				&& gridRouting == that.gridRouting
+				&& gridForms().equals(that.gridForms())
+				&& proxy.equals(that.proxy)
+				&& noProxy.equals(that.noProxy)
+				&& pageLoadStrategy.equals(that.pageLoadStrategy)
+				&& blockImages == that.blockImages
+				&& muteMedia == that.muteMedia
+				&& blockedHosts.equals(that.blockedHosts)
+				&& pageLoadTimeout.equals(that.pageLoadTimeout)
+				&& scriptTimeout.equals(that.scriptTimeout);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(webBrowser, gridRouting, gridForms(), proxy, noProxy,
+				pageLoadStrategy, blockImages, muteMedia, blockedHosts, pageLoadTimeout, scriptTimeout);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s grid=%s proxy=%s noProxy=%s pageLoad=%s blockImages=%s muteMedia=%s blockedHosts=%s",
+				webBrowser, gridForms(), proxy.orElse("-"), noProxy.orElse("-"),
+				pageLoadStrategy.map(PageLoadStrategy::toString).orElse("-"), blockImages, muteMedia, blockedHosts);
+	}
 }
@@ -1,18 +1,34 @@
 package it.vinmar.factory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.Proxy;
 import org.openqa.selenium.Proxy.ProxyType;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
@@ -44,6 +60,21 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 	 */
 	private final Logger logger = LoggerFactory.getLogger("root");
 
+	/**
+	 * System property with a directory of pre-provisioned driver binaries, it disables any download
+	 */
+	public static final String DRIVER_DIR_PROPERTY = "factory.driverDir";
+
+	/**
+	 * Driver binary resolved for each browser type, resolution happens once per JVM
+	 */
+	private static final Map<DriverManagerType, String> RESOLVED_DRIVERS = new ConcurrentHashMap<>();
+
+	/**
+	 * Debug extensions extracted from classpath, extraction happens once per JVM
+	 */
+	private static final Map<String, File> EXTENSIONS = new ConcurrentHashMap<>();
+
 	/**
 	 * Factory creates new  {@code WebDriver} based on this enum
 	 */
@@ -55,9 +86,9 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 	private final Optional<String> proxy;
 
 	/**
-	 * {@code Optional} value of Selenium Grid {@code URL}
+	 * {@code Optional} router among Selenium Grid endpoints
 	 */
-	private final Optional<URL> grid;
+	private final Optional<GridRouter> grid;
 
 	/**
 	 * {@code Optional} comma separated list of hosts that bypass proxy
@@ -74,6 +105,22 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 	 */
 	private final AtomicInteger counter;
 
+	/**
+	 * Browser options built once and shared by every session, never modified after construction.
+	 * It is null for PhantomJS whose capabilities carry a per-session log file.
+	 */
+	private final Capabilities optionsTemplate;
+
+	/**
+	 * Page loading options, i.e. load strategy, blocked content and timeouts
+	 */
+	private final WebDriverConf loading;
+
+	/**
+	 * Handle of window opened with each session, every other window is closed by reset
+	 */
+	private final Map<WebDriver, String> mainWindows = new ConcurrentHashMap<>();
+
 	/**
 	 * Factory constructor with declared sub-configuration.
 	 *
@@ -90,18 +137,46 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 			final Optional<String> inProxy,
 			final Optional<URL> inGrid,
 			final Optional<String> inNoProxy) {
+		this(inBrowserType,
+				inProxy,
+				inGrid.map(url -> new GridRouter(Collections.singletonList(url), GridRouter.DEFAULT_ROUTING, GridRouter.DEFAULT_QUARANTINE))
+						.orElse(null),
+				inNoProxy,
+				new WebDriverConf(inBrowserType));
+	}
+
+	/**
+	 * Factory constructor with router among Selenium Grid endpoints.
+	 *
+	 * @param inBrowserType
+	 *            string describes configured browser
+	 * @param inProxy
+	 *            if behind proxy use format &lt;host&gt;:&lt;port&gt;
+	 * @param inGrid
+	 *            router among Selenium Grid endpoints, null if grid is not used
+	 * @param inNoProxy
+	 *            comma separated list of "no proxy" hosts
+	 * @param inLoading
+	 *            configuration with page loading options
+	 */
+	private WebDriverFactory(final String inBrowserType,
+			final Optional<String> inProxy,
+			final GridRouter inGrid,
+			final Optional<String> inNoProxy,
+			final WebDriverConf inLoading) {
 
 		logger.info(String.format("#### Creation of WebDriverFactory for %s", inBrowserType));
 		inProxy.ifPresent(urlproxy -> logger
 				.info(String.format("#### Using proxy -> %s", urlproxy.toString())));
 		inNoProxy.ifPresent(listNoProxy -> logger
 				.info(String.format("#### Using proxy -> %s", listNoProxy.split(",").toString())));
-		inGrid.ifPresent(urlgrid -> logger
-				.info(String.format("#### Using Selenium Grid -> %s", urlgrid.toString())));
+		if (inGrid != null) {
+			logger.info(String.format("#### Using Selenium Grid -> %s", inGrid.toString()));
+		}
 
 		browserType = WebBrowser.valueOf(inBrowserType);
 		this.proxy = inProxy;
-		this.grid = inGrid;
+		this.grid = Optional.ofNullable(inGrid);
 		this.noProxy = inNoProxy;
 
 		proxyObject = new Proxy();
@@ -113,6 +188,9 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 		}
 
 		counter = new AtomicInteger(0);
+
+		loading = inLoading;
+		optionsTemplate = createOptionsTemplate();
 	}
 
 	/**
@@ -123,8 +201,11 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 	public WebDriverFactory(final WebDriverConf conf) {
 		this(conf.getWebBrowser().toString(),
 				conf.getProxy(),
-				conf.getGrid(),
-				conf.getNoProxy());
+				conf.getGrids().isEmpty()
+						? null
+						: new GridRouter(conf.getGrids(), conf.getGridRouting(), GridRouter.DEFAULT_QUARANTINE),
+				conf.getNoProxy(),
+				conf);
 	}
 
 	/**
@@ -146,6 +227,176 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 		this.setupAction = Optional.ofNullable(inSetupAction);
 	}
 
+	/**
+	 * It makes driver binary of a browser type available, only first call per JVM resolves it.
+	 * Concurrent first calls wait for a single resolution.
+	 *
+	 * @param type is browser type
+	 */
+	private void setupDriver(final DriverManagerType type) {
+		RESOLVED_DRIVERS.computeIfAbsent(type, this::resolveDriver);
+	}
+
+	/**
+	 * It resolves driver binary of a browser type, from pre-provisioned directory if configured
+	 * otherwise via {@code WebDriverManager}
+	 *
+	 * @param type is browser type
+	 *
+	 * @return path of driver binary
+	 */
+	String resolveDriver(final DriverManagerType type) {
+
+		final String driverDir = System.getProperty(DRIVER_DIR_PROPERTY);
+
+		if (driverDir != null) {
+			final Path binary = Paths.get(driverDir, driverFileName(type));
+			if (!Files.isExecutable(binary)) {
+				String msg = String.format("XXXX Missing driver binary -> %s", binary);
+				logger.error(msg);
+				throw new IllegalStateException(msg);
+			}
+
+			System.setProperty(driverSystemProperty(type), binary.toString());
+			logger.info(String.format("#### Using offline driver -> %s", binary));
+			return binary.toString();
+		}
+
+		final WebDriverManager wdm = WebDriverManager.getInstance(type);
+
+		// handle download manager behind proxy
+		if (proxy.isPresent()) {
+			wdm.proxy(proxy.get()).setup();
+		} else {
+			wdm.setup();
+		}
+
+		final String binary = System.getProperty(driverSystemProperty(type));
+		logger.info(String.format("#### Resolved driver -> %s", binary));
+		return binary != null ? binary : "";
+	}
+
+	/**
+	 * @param type is browser type
+	 *
+	 * @return system property read by Selenium for driver binary
+	 */
+	private static String driverSystemProperty(final DriverManagerType type) {
+
+		switch (type) {
+		case CHROME:
+			return "webdriver.chrome.driver";
+		case FIREFOX:
+			return "webdriver.gecko.driver";
+		case PHANTOMJS:
+			return "phantomjs.binary.path";
+		default:
+			throw new IllegalStateException("Missing configuration for driver " + type);
+		}
+	}
+
+	/**
+	 * @param type is browser type
+	 *
+	 * @return file name of driver binary into pre-provisioned directory
+	 */
+	static String driverFileName(final DriverManagerType type) {
+
+		final String suffix = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows")
+				? ".exe"
+				: "";
+
+		switch (type) {
+		case CHROME:
+			return "chromedriver" + suffix;
+		case FIREFOX:
+			return "geckodriver" + suffix;
+		case PHANTOMJS:
+			return "phantomjs" + suffix;
+		default:
+			throw new IllegalStateException("Missing configuration for driver " + type);
+		}
+	}
+
+	/**
+	 * It builds browser options shared by every session of this factory
+	 *
+	 * @return options template, null if options are built per session
+	 */
+	private Capabilities createOptionsTemplate() {
+
+		switch (browserType) {
+		case FIREFOX:
+			return createFirefoxOptions(false);
+
+		case FIREFOX_HEADLESS:
+			return grid.isPresent()
+					? DesiredCapabilities.firefox().merge(applyPageLoading(new FirefoxOptions(), new TemplateProfile()))
+					: createFirefoxOptions(true);
+
+		case CHROME:
+			return createChromeOptions(false);
+
+		case CHROME_HEADLESS:
+			return grid.isPresent()
+					? DesiredCapabilities.chrome().merge(applyPageLoading(new ChromeOptions()))
+					: createChromeOptions(true);
+
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return browser options shared by every session, null if options are built per session
+	 */
+	Capabilities getOptionsTemplate() {
+		return optionsTemplate;
+	}
+
+	/**
+	 * It gives debug extension extracted from classpath into a temporary file,
+	 * same file is shared by every factory of the JVM
+	 *
+	 * @param resourceName is classpath resource of extension
+	 *
+	 * @return extension file
+	 */
+	private File extension(final String resourceName) {
+		return EXTENSIONS.computeIfAbsent(resourceName, this::extractExtension);
+	}
+
+	/**
+	 * It extracts a classpath resource into a temporary file deleted on JVM exit
+	 *
+	 * @param resourceName is classpath resource of extension
+	 *
+	 * @return extracted file
+	 */
+	private File extractExtension(final String resourceName) {
+
+		final String extension = resourceName.substring(resourceName.lastIndexOf('.'));
+
+		Path tempChroPath = null;
+		try {
+			final InputStream chroPathResource = getClass().getResourceAsStream(resourceName);
+
+			tempChroPath = Files.createTempFile("ChroPath", extension);
+			Files.copy(chroPathResource, tempChroPath, StandardCopyOption.REPLACE_EXISTING);
+
+			return tempChroPath.toFile();
+
+		} catch (final IOException e) {
+			String msg = "XXXX Error during debug procedure -> no ChroPath available.";
+			logger.error(msg);
+			throw new IllegalStateException(msg);
+		} finally {
+			if (tempChroPath != null) {
+				tempChroPath.toFile().deleteOnExit();
+			}
+		}
+	}
+
 	/**
 	 * Private method to generate FirefoxOptions object.
 	 *
@@ -171,32 +422,14 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 				FirefoxDriver.SystemProperty.BROWSER_LOGFILE,
 				"/dev/null");
 
-		final FirefoxProfile fp = new FirefoxProfile();
+		final FirefoxProfile fp = new TemplateProfile();
 		fp.setPreference("geo.prompt.testing", Boolean.TRUE);
 		fp.setPreference("geo.prompt.testing.allow", Boolean.TRUE);
 		fp.setPreference("geo.wifi.uri",
 				"data:application/json,{\"status\":\"OK\",\"accuracy\":10.0,\"location\":{\"lat\":37.619431,\"lng\":-112.166504}}");
 
 		if (!headless && Boolean.parseBoolean(System.getProperty("factory.debug", "false"))) {
-
-			Path tempChroPath = null;
-			try {
-				final InputStream chroPathResource = getClass().getResourceAsStream("/ChroPath.xpi");
-
-				tempChroPath = Files.createTempFile("ChroPath", ".xpi");
-				Files.copy(chroPathResource, tempChroPath, StandardCopyOption.REPLACE_EXISTING);
-
-				fp.addExtension(tempChroPath.toFile());
-
-			} catch (final IOException e) {
-				String msg = "XXXX Error during debug procedure -> no ChroPath available.";
-				logger.error(msg);
-				throw new IllegalStateException(msg);
-			} finally {
-				if (tempChroPath != null) {
-					tempChroPath.toFile().deleteOnExit();
-				}
-			}
+			fp.addExtension(extension("/ChroPath.xpi"));
 		}
 
 		noProxy.ifPresent(
@@ -205,6 +438,35 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 						noProxyString)
 				);
 
+		return applyPageLoading(fops, fp);
+	}
+
+	/**
+	 * It adds page loading options to Firefox options and sets profile
+	 *
+	 * @param fops is Firefox options
+	 * @param fp is Firefox profile, it receives blocking preferences
+	 *
+	 * @return fops
+	 */
+	private FirefoxOptions applyPageLoading(final FirefoxOptions fops, final FirefoxProfile fp) {
+
+		loading.getPageLoadStrategy().ifPresent(fops::setPageLoadStrategy);
+
+		if (loading.isBlockImages()) {
+			fp.setPreference("permissions.default.image", 2);
+		}
+
+		if (loading.isMuteMedia()) {
+			fp.setPreference("media.autoplay.default", 5);
+			fp.setPreference("media.volume_scale", "0.0");
+		}
+
+		// blocked hosts resolve to localhost, browser still connects to a local port
+		if (!loading.getBlockedHosts().isEmpty()) {
+			fp.setPreference("network.dns.localDomains", String.join(",", loading.getBlockedHosts()));
+		}
+
 		fops.setProfile(fp);
 
 		return fops;
@@ -213,23 +475,13 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 	/**
 	 * This method creates a local FirefoxDriver instance
 	 *
-	 * @param headless
-	 *
 	 * @return {@code FirefoxDriver} instance
 	 */
-	private FirefoxDriver createLocalFirefoxDriver(final Boolean headless) {
-
-		WebDriverManager wdm =
-				WebDriverManager.getInstance(DriverManagerType.FIREFOX);
+	private FirefoxDriver createLocalFirefoxDriver() {
 
-		// handle download manager behind proxy
-		if (proxy.isPresent()) {
-			wdm.proxy(proxy.get()).setup();
-		} else {
-			wdm.setup();
-		}
+		setupDriver(DriverManagerType.FIREFOX);
 
-		return new FirefoxDriver(createFirefoxOptions(headless));
+		return new FirefoxDriver((FirefoxOptions) optionsTemplate);
 	}
 
 	/**
@@ -248,28 +500,41 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 		}
 
 		if (!headless && Boolean.parseBoolean(System.getProperty("factory.debug", "false"))) {
+			cops.addExtensions(extension("/ChroPath.crx"));
+		}
 
-			Path tempChroPath = null;
-			try {
-				final InputStream chroPathResource = getClass().getResourceAsStream("/ChroPath.crx");
+		proxy.ifPresent(ok -> cops.setCapability(CapabilityType.PROXY, proxyObject));
 
-				tempChroPath = Files.createTempFile("ChroPath", ".crx");
-				Files.copy(chroPathResource, tempChroPath, StandardCopyOption.REPLACE_EXISTING);
+		return applyPageLoading(cops);
+	}
 
-				cops.addExtensions(tempChroPath.toFile());
+	/**
+	 * It adds page loading options to Chrome options
+	 *
+	 * @param cops is Chrome options
+	 *
+	 * @return cops
+	 */
+	private ChromeOptions applyPageLoading(final ChromeOptions cops) {
 
-			} catch (final IOException e) {
-				String msg = "XXXX Error during debug procedure -> no ChroPath available.";
-				logger.error(msg);
-				throw new IllegalStateException(msg);
-			} finally {
-				if (tempChroPath != null) {
-					tempChroPath.toFile().deleteOnExit();
-				}
-			}
+		loading.getPageLoadStrategy().ifPresent(cops::setPageLoadStrategy);
+
+		if (loading.isBlockImages()) {
+			final Map<String, Object> prefs = new HashMap<>();
+			prefs.put("profile.managed_default_content_settings.images", 2);
+			cops.setExperimentalOption("prefs", prefs);
 		}
 
-		proxy.ifPresent(ok -> cops.setCapability(CapabilityType.PROXY, proxyObject));
+		if (loading.isMuteMedia()) {
+			cops.addArguments("--autoplay-policy=user-gesture-required", "--mute-audio");
+		}
+
+		// blocked hosts are not resolved at all
+		if (!loading.getBlockedHosts().isEmpty()) {
+			cops.addArguments("--host-resolver-rules=" + loading.getBlockedHosts().stream()
+					.map(host -> String.format("MAP %s ~NOTFOUND", host))
+					.collect(Collectors.joining(", ")));
+		}
 
 		return cops;
 	}
@@ -277,22 +542,13 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 	/**
 	 * This method creates a local ChromeDriver instance
 	 *
-	 * @param headless, true if headless
-	 *
 	 * @return {@code ChromeDriver} instance
 	 */
-	private ChromeDriver createLocalChromeDriver(final Boolean headless) {
+	private ChromeDriver createLocalChromeDriver() {
 
-		WebDriverManager wdm =
-				WebDriverManager.getInstance(DriverManagerType.CHROME);
+		setupDriver(DriverManagerType.CHROME);
 
-		if (proxy.isPresent()) {
-			wdm.proxy(proxy.get()).setup();
-		} else {
-			wdm.setup();
-		}
-
-		return new ChromeDriver(createChromeOptions(headless));
+		return new ChromeDriver((ChromeOptions) optionsTemplate);
 	}
 
 	@Override
@@ -306,34 +562,20 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 
 		switch (browserType) {
 		case FIREFOX:
-			if (grid.isPresent()) {
-				resp = new RemoteWebDriver(grid.get(), createFirefoxOptions(false));
-			} else {
-				resp = createLocalFirefoxDriver(false);
-			}
-			break;
-
 		case FIREFOX_HEADLESS:
 			if (grid.isPresent()) {
-				resp = new RemoteWebDriver(grid.get(), DesiredCapabilities.firefox());
+				resp = grid.get().open(url -> new RemoteWebDriver(url, optionsTemplate));
 			} else {
-				resp = createLocalFirefoxDriver(true);
+				resp = createLocalFirefoxDriver();
 			}
 			break;
 
 		case CHROME:
-			if (grid.isPresent()) {
-				resp = new RemoteWebDriver(grid.get(), createChromeOptions(false));
-			} else {
-				resp = createLocalChromeDriver(false);
-			}
-			break;
-
 		case CHROME_HEADLESS:
 			if (grid.isPresent()) {
-				resp = new RemoteWebDriver(grid.get(), DesiredCapabilities.chrome());
+				resp = grid.get().open(url -> new RemoteWebDriver(url, optionsTemplate));
 			} else {
-				resp = createLocalChromeDriver(true);
+				resp = createLocalChromeDriver();
 			}
 			break;
 
@@ -341,23 +583,24 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 			final DesiredCapabilities caps = new DesiredCapabilities();
 			caps.setJavascriptEnabled(true);
 
-			WebDriverManager wdm = WebDriverManager
-					.getInstance(DriverManagerType.PHANTOMJS);
+			setupDriver(DriverManagerType.PHANTOMJS);
 
-			if (proxy.isPresent()) {
-				wdm.proxy(proxy.get()).setup();
+			final List<String> cliArgs = new ArrayList<>();
 
-				caps.setCapability(PhantomJSDriverService.PHANTOMJS_CLI_ARGS,
-						new String[] {
+			if (proxy.isPresent()) {
+				cliArgs.addAll(Arrays.asList(
 								"--proxy=" + proxy.get(),
 								"--web-security=false",
 								"--ssl-protocol=any",
 								"--ignore-ssl-errors=true",
 								"--webdriver-loglevel=INFO",
-								String.format("--webdriver-logfile=./phantomjsdriver_%03d.log", index)
-								});
-			} else {
-				wdm.setup();
+								String.format("--webdriver-logfile=./phantomjsdriver_%03d.log", index)));
+			}
+			if (loading.isBlockImages()) {
+				cliArgs.add("--load-images=false");
+			}
+			if (!cliArgs.isEmpty()) {
+				caps.setCapability(PhantomJSDriverService.PHANTOMJS_CLI_ARGS, cliArgs.toArray(new String[0]));
 			}
 			resp = new PhantomJSDriver(caps);
 			break;
@@ -366,13 +609,150 @@ public final class WebDriverFactory implements Factory<WebDriver> {
 			throw new IllegalStateException("Missing configuration for WebDriver creation!");
 		}
 
+		applyTimeouts(resp);
+
+		trackMainWindow(resp);
+
 		setupAction.ifPresent(action -> action.accept(resp));
 
 		return resp;
 	}
 
+	/**
+	 * It sets configured timeouts on a new session, same way for local and grid drivers
+	 *
+	 * @param driver is the new driver
+	 */
+	private void applyTimeouts(final WebDriver driver) {
+
+		loading.getPageLoadTimeout().ifPresent(
+				timeout -> driver.manage().timeouts().pageLoadTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+
+		loading.getScriptTimeout().ifPresent(
+				timeout -> driver.manage().timeouts().setScriptTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * It records window opened with a new session, the one kept by reset
+	 *
+	 * @param driver is the new driver
+	 */
+	void trackMainWindow(final WebDriver driver) {
+
+		try {
+			final String handle = driver.getWindowHandle();
+			if (handle != null) {
+				mainWindows.put(driver, handle);
+			}
+		} catch (final WebDriverException e) {
+			// an untracked driver is renewed instead of being reset
+			logger.warn(String.format("#### Session window not tracked -> %s", e.getMessage()));
+		}
+	}
+
 	@Override
 	public void closeResource(final WebDriver driver) {
-		driver.quit();
+		mainWindows.remove(driver);
+		try {
+			driver.quit();
+		} finally {
+			grid.ifPresent(router -> router.release(driver));
+		}
+	}
+
+	/**
+	 * A driver is valid when its session is still open and browser answers
+	 * to a window handle request, the cheapest round trip available.
+	 */
+	@Override
+	public boolean validate(final WebDriver driver) {
+
+		if (driver instanceof RemoteWebDriver && ((RemoteWebDriver) driver).getSessionId() == null) {
+			return false;
+		}
+
+		try {
+			driver.getWindowHandle();
+			return true;
+		} catch (final WebDriverException e) {
+			logger.warn(String.format("#### Driver not responding -> %s", e.getMessage()));
+			return false;
+		}
+	}
+
+	/**
+	 * Script that empties web storage of current page, pages without storage (e.g. {@code about:blank}) are skipped
+	 */
+	private static final String CLEAR_STORAGE = "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) { }";
+
+	/**
+	 * A driver is cleaned in place: every window but the one opened with session is closed,
+	 * cookies visible to current page and its web storage are deleted and browser is left on
+	 * {@code about:blank}. It is not an isolation among sites: cookies, storage and cache of other
+	 * sites visited during iteration survive, only a renewal gives a clean browser.
+	 * A driver whose session window is gone cannot be reset.
+	 */
+	@Override
+	public boolean reset(final WebDriver driver) {
+
+		if (driver instanceof RemoteWebDriver && ((RemoteWebDriver) driver).getSessionId() == null) {
+			return false;
+		}
+
+		final String main = mainWindows.get(driver);
+		if (main == null) {
+			return false;
+		}
+
+		try {
+			final Set<String> handles = driver.getWindowHandles();
+			if (!handles.contains(main)) {
+				return false;
+			}
+
+			for (final String handle : handles) {
+				if (!handle.equals(main)) {
+					driver.switchTo().window(handle);
+					driver.close();
+				}
+			}
+			driver.switchTo().window(main);
+
+			driver.manage().deleteAllCookies();
+			if (driver instanceof JavascriptExecutor) {
+				((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE);
+			}
+
+			driver.navigate().to("about:blank");
+			return true;
+		} catch (final WebDriverException e) {
+			logger.warn(String.format("#### Driver not reset -> %s", e.getMessage()));
+			return false;
+		}
+	}
+
+	/**
+	 * Firefox profile zipped and encoded only on first session, later sessions reuse
+	 * the encoded form. It must not be modified once shared.
+	 */
+	private static final class TemplateProfile extends FirefoxProfile {
+
+		private volatile String json = null;
+
+		@Override
+		public String toJson() throws IOException {
+
+			String resp = json;
+			if (resp == null) {
+				synchronized (this) {
+					if (json == null) {
+						json = super.toJson();
+					}
+					resp = json;
+				}
+			}
+
+			return resp;
+		}
 	}
 }
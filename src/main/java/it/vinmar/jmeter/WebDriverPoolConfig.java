@@ -0,0 +1,231 @@
+package it.vinmar.jmeter;
+
+import java.time.Duration;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.vinmar.ResourceArbiter;
+import it.vinmar.factory.WebDriverConf;
+import it.vinmar.factory.WebDriverFactory;
+
+/**
+ * JMeter config element owning a pool of WebDriver. Pool is created and warmed up when test starts,
+ * registered into {@code WebDriverPools} under its name, and shut down when test ends.
+ */
+public class WebDriverPoolConfig extends ConfigTestElement implements TestBean, TestStateListener {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger("root");
+
+	private transient String poolName;
+
+	private transient String browser;
+
+	private transient String grid;
+
+	private transient String proxy;
+
+	private transient String noProxy;
+
+	private transient int poolSize;
+
+	private transient int maxIterations;
+
+	private transient int spares;
+
+	private transient int renewalThreads;
+
+	private transient int warmUpConcurrency;
+
+	private transient String pageLoadStrategy;
+
+	private transient boolean blockImages;
+
+	private transient String blockedHosts;
+
+	private transient int pageLoadTimeout;
+
+	private transient int shutdownGrace;
+
+	@Override
+	public void testStarted() {
+
+		WebDriverConf conf = new WebDriverConf(browser, emptyToNull(grid), emptyToNull(proxy), emptyToNull(noProxy))
+				.withBlockImages(blockImages)
+				.withBlockedHosts(blockedHosts);
+		if (emptyToNull(pageLoadStrategy) != null) {
+			conf = conf.withPageLoadStrategy(pageLoadStrategy);
+		}
+		if (pageLoadTimeout > 0) {
+			conf = conf.withPageLoadTimeout(Duration.ofSeconds(pageLoadTimeout));
+		}
+
+		logger.info(String.format("#### Creation of WebDriver pool %s: %d x %s", poolName, poolSize, conf));
+
+		final ResourceArbiter<WebDriver> pool = ResourceArbiter.builder(new WebDriverFactory(conf))
+				.size(poolSize)
+				.maxIterations(maxIterations > 0 ? maxIterations : Integer.MAX_VALUE)
+				.spares(spares)
+				.renewalThreads(Math.max(1, renewalThreads))
+				.warmUpConcurrency(Math.max(1, warmUpConcurrency))
+				.validateOnBorrow(true)
+				.jmxName(poolName)
+				.build();
+
+		WebDriverPools.register(poolName, pool);
+	}
+
+	@Override
+	public void testStarted(final String host) {
+		testStarted();
+	}
+
+	@Override
+	public void testEnded() {
+
+		final ResourceArbiter<WebDriver> pool = WebDriverPools.unregister(poolName);
+
+		if (pool != null) {
+			logger.info(String.format("#### TearDown of WebDriver pool %s: %s",
+					poolName, pool.shutdown(Duration.ofSeconds(shutdownGrace))));
+		}
+	}
+
+	@Override
+	public void testEnded(final String host) {
+		testEnded();
+	}
+
+	private static String emptyToNull(final String value) {
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	public void setPoolName(final String value) {
+		poolName = value;
+	}
+
+	public String getBrowser() {
+		return browser;
+	}
+
+	public void setBrowser(final String value) {
+		browser = value;
+	}
+
+	public String getGrid() {
+		return grid;
+	}
+
+	public void setGrid(final String value) {
+		grid = value;
+	}
+
+	public String getProxy() {
+		return proxy;
+	}
+
+	public void setProxy(final String value) {
+		proxy = value;
+	}
+
+	public String getNoProxy() {
+		return noProxy;
+	}
+
+	public void setNoProxy(final String value) {
+		noProxy = value;
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public void setPoolSize(final int value) {
+		poolSize = value;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(final int value) {
+		maxIterations = value;
+	}
+
+	public int getSpares() {
+		return spares;
+	}
+
+	public void setSpares(final int value) {
+		spares = value;
+	}
+
+	public int getRenewalThreads() {
+		return renewalThreads;
+	}
+
+	public void setRenewalThreads(final int value) {
+		renewalThreads = value;
+	}
+
+	public int getWarmUpConcurrency() {
+		return warmUpConcurrency;
+	}
+
+	public void setWarmUpConcurrency(final int value) {
+		warmUpConcurrency = value;
+	}
+
+	public String getPageLoadStrategy() {
+		return pageLoadStrategy;
+	}
+
+	public void setPageLoadStrategy(final String value) {
+		pageLoadStrategy = value;
+	}
+
+	public boolean isBlockImages() {
+		return blockImages;
+	}
+
+	public void setBlockImages(final boolean value) {
+		blockImages = value;
+	}
+
+	public String getBlockedHosts() {
+		return blockedHosts;
+	}
+
+	public void setBlockedHosts(final String value) {
+		blockedHosts = value;
+	}
+
+	public int getPageLoadTimeout() {
+		return pageLoadTimeout;
+	}
+
+	public void setPageLoadTimeout(final int value) {
+		pageLoadTimeout = value;
+	}
+
+	public int getShutdownGrace() {
+		return shutdownGrace;
+	}
+
+	public void setShutdownGrace(final int value) {
+		shutdownGrace = value;
+	}
+}
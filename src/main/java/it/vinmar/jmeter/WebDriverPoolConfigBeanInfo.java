@@ -0,0 +1,71 @@
+package it.vinmar.jmeter;
+
+import java.beans.PropertyDescriptor;
+
+import org.apache.jmeter.testbeans.BeanInfoSupport;
+
+import it.vinmar.factory.WebDriverConf.WebBrowser;
+
+/**
+ * GUI description of {@code WebDriverPoolConfig} properties
+ */
+public class WebDriverPoolConfigBeanInfo extends BeanInfoSupport {
+
+	public WebDriverPoolConfigBeanInfo() {
+		super(WebDriverPoolConfig.class);
+
+		createPropertyGroup("pool", new String[] {
+				"poolName", "poolSize", "maxIterations", "spares", "renewalThreads", "warmUpConcurrency", "shutdownGrace" });
+		createPropertyGroup("browser_settings", new String[] {
+				"browser", "grid", "proxy", "noProxy" });
+		createPropertyGroup("loading", new String[] {
+				"pageLoadStrategy", "blockImages", "blockedHosts", "pageLoadTimeout" });
+
+		text("poolName", "WebDriversPool");
+		number("poolSize", 1);
+		number("maxIterations", 100);
+		number("spares", 0);
+		number("renewalThreads", 1);
+		number("warmUpConcurrency", 4);
+		number("shutdownGrace", 30);
+
+		final PropertyDescriptor browser = property("browser");
+		browser.setValue(NOT_UNDEFINED, Boolean.TRUE);
+		browser.setValue(DEFAULT, WebBrowser.CHROME_HEADLESS.name());
+		browser.setValue(NOT_OTHER, Boolean.TRUE);
+		browser.setValue(NOT_EXPRESSION, Boolean.TRUE);
+		final String[] browsers = new String[WebBrowser.values().length];
+		for (int index = 0; index < browsers.length; index++) {
+			browsers[index] = WebBrowser.values()[index].name();
+		}
+		browser.setValue(TAGS, browsers);
+
+		text("grid", "");
+		text("proxy", "");
+		text("noProxy", "");
+
+		final PropertyDescriptor strategy = property("pageLoadStrategy");
+		strategy.setValue(NOT_UNDEFINED, Boolean.TRUE);
+		strategy.setValue(DEFAULT, "");
+		strategy.setValue(TAGS, new String[] { "", "normal", "eager", "none" });
+
+		final PropertyDescriptor images = property("blockImages");
+		images.setValue(NOT_UNDEFINED, Boolean.TRUE);
+		images.setValue(DEFAULT, Boolean.FALSE);
+
+		text("blockedHosts", "");
+		number("pageLoadTimeout", 0);
+	}
+
+	private void text(final String name, final String defaultValue) {
+		final PropertyDescriptor descriptor = property(name);
+		descriptor.setValue(NOT_UNDEFINED, Boolean.TRUE);
+		descriptor.setValue(DEFAULT, defaultValue);
+	}
+
+	private void number(final String name, final int defaultValue) {
+		final PropertyDescriptor descriptor = property(name);
+		descriptor.setValue(NOT_UNDEFINED, Boolean.TRUE);
+		descriptor.setValue(DEFAULT, defaultValue);
+	}
+}
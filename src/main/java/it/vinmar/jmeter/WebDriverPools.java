@@ -0,0 +1,65 @@
+package it.vinmar.jmeter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.WebDriver;
+
+import it.vinmar.ResourceArbiter;
+
+/**
+ * Registry of WebDriver pools of a JMeter test, filled by {@code WebDriverPoolConfig}
+ * and looked up by {@code WebDriverSampler} or by scripts
+ */
+public final class WebDriverPools {
+
+	private static final Map<String, ResourceArbiter<WebDriver>> POOLS = new ConcurrentHashMap<>();
+
+	private WebDriverPools() {
+		// only static methods
+	}
+
+	/**
+	 * It registers a pool
+	 *
+	 * @param name is pool name
+	 * @param pool is the pool
+	 *
+	 * @throws IllegalStateException if another pool is registered with same name
+	 */
+	public static void register(final String name, final ResourceArbiter<WebDriver> pool) {
+		if (POOLS.putIfAbsent(name, pool) != null) {
+			throw new IllegalStateException(String.format("WebDriver pool %s already registered!", name));
+		}
+	}
+
+	/**
+	 * It returns a registered pool
+	 *
+	 * @param name is pool name
+	 *
+	 * @return the pool
+	 *
+	 * @throws IllegalStateException if no pool is registered with that name
+	 */
+	public static ResourceArbiter<WebDriver> get(final String name) {
+
+		final ResourceArbiter<WebDriver> pool = POOLS.get(name);
+		if (pool == null) {
+			throw new IllegalStateException(String.format("WebDriver pool %s not registered!", name));
+		}
+
+		return pool;
+	}
+
+	/**
+	 * It removes a pool from registry, pool is not shut down
+	 *
+	 * @param name is pool name
+	 *
+	 * @return removed pool, null if not registered
+	 */
+	public static ResourceArbiter<WebDriver> unregister(final String name) {
+		return POOLS.remove(name);
+	}
+}
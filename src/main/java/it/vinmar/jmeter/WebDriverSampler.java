@@ -0,0 +1,168 @@
+package it.vinmar.jmeter;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.protocol.java.sampler.AbstractJavaSamplerClient;
+import org.apache.jmeter.protocol.java.sampler.JavaSamplerContext;
+import org.apache.jmeter.samplers.SampleResult;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.vinmar.Affinity;
+import it.vinmar.ResourceArbiter;
+
+/**
+ * JMeter Java sampler that verifies a page on a pooled WebDriver: it reserves a driver, preferring
+ * the one that already visited same host, loads url, checks that xpath matches at least one element
+ * and frees the driver. Reservation wait and page time are reported as two sub-results,
+ * so time spent waiting for a browser does not inflate page time.
+ */
+public class WebDriverSampler extends AbstractJavaSamplerClient {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger("root");
+
+	public static final String POOL = "pool";
+
+	public static final String URL = "url";
+
+	public static final String XPATH = "xpath";
+
+	public static final String RESERVATION_TIMEOUT = "reservationTimeoutMs";
+
+	/**
+	 * Label of reservation sub-result
+	 */
+	public static final String RESERVATION_LABEL = "WebDriver reservation";
+
+	/**
+	 * Label of page sub-result
+	 */
+	public static final String PAGE_LABEL = "WebDriver page";
+
+	private ResourceArbiter<WebDriver> pool;
+
+	private Duration reservationTimeout;
+
+	@Override
+	public Arguments getDefaultParameters() {
+
+		final Arguments params = new Arguments();
+		params.addArgument(POOL, "WebDriversPool");
+		params.addArgument(URL, "${protocol}://${host}${path}");
+		params.addArgument(XPATH, "${xpath}");
+		params.addArgument(RESERVATION_TIMEOUT, "60000");
+
+		return params;
+	}
+
+	/**
+	 * Pool is looked up once for each thread
+	 */
+	@Override
+	public void setupTest(final JavaSamplerContext context) {
+		pool = WebDriverPools.get(context.getParameter(POOL, "WebDriversPool"));
+		reservationTimeout = Duration.ofMillis(context.getLongParameter(RESERVATION_TIMEOUT, 60_000L));
+	}
+
+	@Override
+	public SampleResult runTest(final JavaSamplerContext context) {
+
+		final String url = context.getParameter(URL);
+		final String xpath = context.getParameter(XPATH);
+
+		final SampleResult result = new SampleResult();
+		result.setSamplerData(url);
+		result.setDataType(SampleResult.TEXT);
+		result.sampleStart();
+
+		final SampleResult reservation = new SampleResult();
+		reservation.setSampleLabel(RESERVATION_LABEL);
+		reservation.sampleStart();
+
+		Optional<WebDriver> reserved;
+		try {
+			reserved = pool.reserveFor(Affinity.host(url), reservationTimeout);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reserved = Optional.empty();
+		}
+
+		reservation.sampleEnd();
+
+		if (!reserved.isPresent()) {
+			logger.error(String.format("XXXX Something wrong during %s -> No WebDriver instance!", url));
+			outcome(reservation, false, "ERROR", "No WebDriver instance");
+			return complete(result, reservation, null);
+		}
+		outcome(reservation, true, "OK", "");
+
+		final WebDriver driver = reserved.get();
+
+		final SampleResult page = new SampleResult();
+		page.setSampleLabel(PAGE_LABEL);
+		page.setSamplerData(url);
+		page.sampleStart();
+
+		try {
+			driver.get(url);
+			final boolean found = !driver.findElements(By.xpath(xpath)).isEmpty();
+			page.sampleEnd();
+			outcome(page, found, found ? "PASS" : "FAIL", found ? "" : String.format("No element matches %s", xpath));
+		} catch (final RuntimeException e) {
+			if (page.getEndTime() == 0L) {
+				page.sampleEnd();
+			}
+			logger.error(String.format("XXXX Generic Error during %s -> %s", url, e.getMessage()));
+			outcome(page, false, "ERROR", String.valueOf(e.getMessage()));
+		} finally {
+			pool.free(driver);
+		}
+
+		return complete(result, reservation, page);
+	}
+
+	/**
+	 * It sets outcome of a result
+	 *
+	 * @param sample is the result
+	 * @param success is true on success
+	 * @param code is response code
+	 * @param message is response message
+	 */
+	private static void outcome(final SampleResult sample, final boolean success, final String code, final String message) {
+		sample.setSuccessful(success);
+		sample.setResponseCode(code);
+		sample.setResponseMessage(message);
+	}
+
+	/**
+	 * It adds sub-results to parent result, parent takes outcome of last one and ends with it
+	 *
+	 * @param result is parent result
+	 * @param reservation is reservation sub-result
+	 * @param page is page sub-result, null if no driver was reserved
+	 *
+	 * @return parent result
+	 */
+	private static SampleResult complete(final SampleResult result, final SampleResult reservation, final SampleResult page) {
+
+		final SampleResult last = page != null ? page : reservation;
+
+		result.addSubResult(reservation, false);
+		if (page != null) {
+			result.addSubResult(page, false);
+		}
+
+		outcome(result, last.isSuccessful(), last.getResponseCode(), last.getResponseMessage());
+		result.setResponseData(last.getResponseMessage(), null);
+
+		return result;
+	}
+}
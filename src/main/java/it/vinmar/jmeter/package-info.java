@@ -0,0 +1,4 @@
+/**
+ * JMeter test elements package
+ */
+package it.vinmar.jmeter;
@@ -0,0 +1,607 @@
+package it.vinmar.runner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.vinmar.Affinity;
+import it.vinmar.ResourceArbiter;
+import it.vinmar.factory.WebDriverConf;
+import it.vinmar.factory.WebDriverFactory;
+
+/**
+ * This class runs a data-driven suite without JMeter. Each row of a tab separated suite file
+ * ({@code testId, protocol, host, path, xpath}) is verified loading url into a pooled
+ * {@code WebDriver}, test passes if xpath matches at least one element.
+ * Suite is read incrementally and rows are dispatched to workers through a bounded queue,
+ * each result is written to a tab separated file as soon as its test ends.
+ */
+public final class SuiteRunner {
+
+	/**
+	 * System property with {@code WebBrowser} used by {@code main}, headless Chrome if not set
+	 */
+	public static final String BROWSER_PROPERTY = "runner.browser";
+
+	/**
+	 * System property with comma separated Selenium Grid urls used by {@code main}, local drivers if not set
+	 */
+	public static final String GRID_PROPERTY = "runner.grid";
+
+	/**
+	 * System property with number of WebDriver instances used by {@code main}, number of cores if not set
+	 */
+	public static final String POOL_SIZE_PROPERTY = "runner.poolSize";
+
+	/**
+	 * Outcome of a suite row
+	 */
+	public enum Outcome {
+		/**
+		 * Xpath matched at least one element
+		 */
+		PASS,
+		/**
+		 * Xpath matched no element
+		 */
+		FAIL,
+		/**
+		 * Test could not be executed, e.g. no WebDriver instance or navigation error
+		 */
+		ERROR
+	}
+
+	/**
+	 * Marker telling a worker that suite is over
+	 */
+	private static final Row END = new Row(null, null, null, null, null);
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = LoggerFactory.getLogger("root");
+
+	private final ResourceArbiter<WebDriver> pool;
+
+	private final int concurrency;
+
+	private final int queueCapacity;
+
+	private final Duration reservationTimeout;
+
+	private final Charset charset;
+
+	private final boolean skipHeader;
+
+	/**
+	 * Constructor used by {@code Builder}
+	 *
+	 * @param builder is the configured builder
+	 */
+	private SuiteRunner(final Builder builder) {
+		pool = builder.pool;
+		concurrency = builder.concurrency > 0 ? builder.concurrency : pool.getStats().getCapacity();
+		queueCapacity = builder.queueCapacity > 0 ? builder.queueCapacity : 2 * concurrency;
+		reservationTimeout = builder.reservationTimeout;
+		charset = builder.charset;
+		skipHeader = builder.skipHeader;
+	}
+
+	/**
+	 * It creates a builder of runner on given pool
+	 *
+	 * @param pool is pool of WebDriver instances
+	 *
+	 * @return a new {@code Builder}
+	 */
+	public static Builder builder(final ResourceArbiter<WebDriver> pool) {
+
+		if (pool == null) {
+			throw new IllegalArgumentException("WebDriver pool is mandatory!");
+		}
+
+		return new Builder(pool);
+	}
+
+	/**
+	 * It runs every row of suite file
+	 *
+	 * @param suite is tab separated suite file
+	 * @param results is tab separated result file, overwritten if exists
+	 *
+	 * @return counters of outcomes
+	 *
+	 * @throws IOException if suite cannot be read or results cannot be written
+	 * @throws InterruptedException if current thread is interrupted while dispatching rows
+	 */
+	public Summary run(final Path suite, final Path results) throws IOException, InterruptedException {
+
+		logger.info(String.format("#### Suite %s started with %d workers.", suite, concurrency));
+
+		final Summary summary = new Summary();
+		final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(queueCapacity);
+		final ExecutorService executor = newExecutor(concurrency);
+
+		try (BufferedReader reader = Files.newBufferedReader(suite, charset);
+				ResultSink sink = new ResultSink(Files.newBufferedWriter(results, StandardCharsets.UTF_8), summary)) {
+
+			final List<Future<?>> workers = new ArrayList<>(concurrency);
+			for (int index = 0; index < concurrency; index++) {
+				workers.add(executor.submit(() -> work(queue, sink)));
+			}
+
+			try {
+				dispatch(reader, queue, sink);
+			} finally {
+				for (int index = 0; index < concurrency; index++) {
+					queue.put(END);
+				}
+			}
+
+			for (final Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (final ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+
+			sink.checkError();
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		logger.info(String.format("#### Suite %s completed -> %s", suite, summary));
+		return summary;
+	}
+
+	/**
+	 * It reads suite rows one by one, waiting while queue is full
+	 *
+	 * @param reader is suite reader
+	 * @param queue is queue of workers
+	 * @param sink receives rows that cannot be parsed
+	 *
+	 * @throws IOException if suite cannot be read
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	private void dispatch(final BufferedReader reader, final BlockingQueue<Row> queue, final ResultSink sink)
+			throws IOException, InterruptedException {
+
+		boolean header = skipHeader;
+		int lineNumber = 0;
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+
+			lineNumber++;
+
+			if (header) {
+				header = false;
+				continue;
+			}
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+
+			final Row row = Row.parse(line);
+			if (row != null) {
+				queue.put(row);
+			} else {
+				sink.record("line " + lineNumber, Outcome.ERROR, 0L, "", "Malformed suite row");
+			}
+		}
+	}
+
+	/**
+	 * It runs rows taken from queue until end marker
+	 *
+	 * @param queue is queue of rows
+	 * @param sink receives results
+	 */
+	private void work(final BlockingQueue<Row> queue, final ResultSink sink) {
+
+		for (;;) {
+			final Row row;
+			try {
+				row = queue.take();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (row == END) {
+				return;
+			}
+
+			// a worker must survive any row, otherwise suite dispatch would block on a full queue
+			try {
+				verify(row, sink);
+			} catch (final RuntimeException e) {
+				logger.error(String.format("XXXX Generic Error during %s -> %s", row.testId, e.getMessage()));
+				sink.record(row.testId, Outcome.ERROR, 0L, row.url(), String.valueOf(e.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * It verifies a suite row on a pooled WebDriver, preferring the one that already visited same host
+	 *
+	 * @param row is suite row
+	 * @param sink receives result
+	 */
+	private void verify(final Row row, final ResultSink sink) {
+
+		final long start = System.nanoTime();
+		final String url = row.url();
+
+		final Optional<WebDriver> reserved;
+		try {
+			reserved = pool.reserveFor(Affinity.host(row.host), reservationTimeout);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			sink.record(row.testId, Outcome.ERROR, System.nanoTime() - start, url, "Interrupted");
+			return;
+		}
+
+		if (!reserved.isPresent()) {
+			logger.error(String.format("XXXX Something wrong during %s -> No WebDriver instance!", row.testId));
+			sink.record(row.testId, Outcome.ERROR, System.nanoTime() - start, url, "No WebDriver instance");
+			return;
+		}
+
+		final WebDriver driver = reserved.get();
+
+		Outcome outcome;
+		String message = "";
+		try {
+			driver.get(url);
+			outcome = driver.findElements(By.xpath(row.xpath)).isEmpty() ? Outcome.FAIL : Outcome.PASS;
+		} catch (final RuntimeException e) {
+			logger.error(String.format("XXXX Generic Error during %s -> %s", row.testId, e.getMessage()));
+			outcome = Outcome.ERROR;
+			message = String.valueOf(e.getMessage());
+		} finally {
+			pool.free(driver);
+		}
+
+		sink.record(row.testId, outcome, System.nanoTime() - start, url, message);
+	}
+
+	/**
+	 * It creates executor of workers, on virtual threads when JDK provides them.
+	 * Looked up via reflection since project is compiled for Java 8.
+	 *
+	 * @param nrThreads is number of workers
+	 *
+	 * @return the executor
+	 */
+	static ExecutorService newExecutor(final int nrThreads) {
+
+		try {
+			final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			final AtomicInteger counter = new AtomicInteger(0);
+			return Executors.newFixedThreadPool(nrThreads, runnable -> {
+				final Thread thread = new Thread(runnable, "SuiteRunner-worker-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Command line entry point: {@code SuiteRunner <suite file> <result file>}.
+	 * Browser, grid and pool size are read from {@code runner.*} system properties,
+	 * process exits with status 1 if any test did not pass.
+	 *
+	 * @param args are suite file and result file
+	 *
+	 * @throws Exception if suite cannot be run
+	 */
+	public static void main(final String[] args) throws Exception {
+
+		if (args.length != 2) {
+			System.err.println("Usage: SuiteRunner <suite file> <result file>");
+			System.exit(2);
+		}
+
+		final int poolSize = Integer.getInteger(POOL_SIZE_PROPERTY, Runtime.getRuntime().availableProcessors());
+
+		final WebDriverFactory factory = new WebDriverFactory(new WebDriverConf(
+				System.getProperty(BROWSER_PROPERTY, "CHROME_HEADLESS"),
+				System.getProperty(GRID_PROPERTY)));
+
+		final ResourceArbiter<WebDriver> pool = ResourceArbiter.builder(factory)
+				.size(poolSize)
+				.warmUpConcurrency(poolSize)
+				.validateOnBorrow(true)
+				.build();
+
+		final Summary summary;
+		try {
+			summary = builder(pool).build().run(Paths.get(args[0]), Paths.get(args[1]));
+		} finally {
+			pool.shutdown(Duration.ofSeconds(10));
+		}
+
+		System.exit(summary.getPassed() == summary.getTotal() ? 0 : 1);
+	}
+
+	/**
+	 * A row of suite file
+	 */
+	private static final class Row {
+
+		private final String testId;
+		private final String protocol;
+		private final String host;
+		private final String path;
+		private final String xpath;
+
+		Row(final String inTestId, final String inProtocol, final String inHost, final String inPath, final String inXpath) {
+			testId = inTestId;
+			protocol = inProtocol;
+			host = inHost;
+			path = inPath;
+			xpath = inXpath;
+		}
+
+		/**
+		 * @param line is a tab separated line
+		 *
+		 * @return parsed row or null if some column is missing
+		 */
+		static Row parse(final String line) {
+
+			final String[] columns = line.split("\t", -1);
+
+			if (columns.length < 5) {
+				return null;
+			}
+
+			return new Row(columns[0].trim(), columns[1].trim(), columns[2].trim(), columns[3].trim(), columns[4].trim());
+		}
+
+		String url() {
+			return String.format("%s://%s%s", protocol, host, path);
+		}
+	}
+
+	/**
+	 * It writes results shared by workers. First write error is kept and
+	 * following results are only counted, so workers keep draining the queue.
+	 */
+	private static final class ResultSink implements AutoCloseable {
+
+		private final BufferedWriter writer;
+
+		private final Summary summary;
+
+		private IOException error = null;
+
+		ResultSink(final BufferedWriter inWriter, final Summary inSummary) throws IOException {
+			writer = inWriter;
+			summary = inSummary;
+			writer.write("testId\toutcome\telapsedMs\turl\tmessage");
+			writer.newLine();
+		}
+
+		synchronized void record(
+				final String testId,
+				final Outcome outcome,
+				final long elapsedNanos,
+				final String url,
+				final String message) {
+
+			summary.count(outcome);
+
+			if (error != null) {
+				return;
+			}
+
+			try {
+				writer.write(String.join("\t",
+						testId,
+						outcome.name(),
+						Long.toString(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)),
+						url,
+						message.replace('\t', ' ').replace('\n', ' ')));
+				writer.newLine();
+				writer.flush();
+			} catch (final IOException e) {
+				error = e;
+			}
+		}
+
+		synchronized void checkError() throws IOException {
+			if (error != null) {
+				throw error;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Counters of suite outcomes
+	 */
+	public static final class Summary {
+
+		private final LongAdder passed = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+
+		void count(final Outcome outcome) {
+			switch (outcome) {
+			case PASS:
+				passed.increment();
+				break;
+			case FAIL:
+				failed.increment();
+				break;
+			default:
+				errors.increment();
+			}
+		}
+
+		/**
+		 * @return number of passed tests
+		 */
+		public long getPassed() {
+			return passed.sum();
+		}
+
+		/**
+		 * @return number of failed tests
+		 */
+		public long getFailed() {
+			return failed.sum();
+		}
+
+		/**
+		 * @return number of tests not executed
+		 */
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		/**
+		 * @return number of suite rows
+		 */
+		public long getTotal() {
+			return getPassed() + getFailed() + getErrors();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("total=%d pass=%d fail=%d error=%d", getTotal(), getPassed(), getFailed(), getErrors());
+		}
+	}
+
+	/**
+	 * Builder of {@code SuiteRunner}
+	 */
+	public static final class Builder {
+
+		private final ResourceArbiter<WebDriver> pool;
+
+		private int concurrency = 0;
+
+		private int queueCapacity = 0;
+
+		private Duration reservationTimeout = Duration.ofSeconds(60);
+
+		private Charset charset = Charset.forName("ISO-8859-15");
+
+		private boolean skipHeader = true;
+
+		private Builder(final ResourceArbiter<WebDriver> inPool) {
+			pool = inPool;
+		}
+
+		/**
+		 * Number of rows run at same time, pool capacity if not set
+		 *
+		 * @param nrWorkers is number of workers
+		 *
+		 * @return this builder
+		 */
+		public Builder concurrency(final int nrWorkers) {
+			if (nrWorkers < 1) {
+				throw new IllegalArgumentException("concurrency must be positive!");
+			}
+			concurrency = nrWorkers;
+			return this;
+		}
+
+		/**
+		 * Number of rows read ahead of workers, twice concurrency if not set
+		 *
+		 * @param capacity is queue capacity
+		 *
+		 * @return this builder
+		 */
+		public Builder queueCapacity(final int capacity) {
+			if (capacity < 1) {
+				throw new IllegalArgumentException("queueCapacity must be positive!");
+			}
+			queueCapacity = capacity;
+			return this;
+		}
+
+		/**
+		 * Max wait for a WebDriver instance, a row not served in time ends in error
+		 *
+		 * @param timeout is max wait
+		 *
+		 * @return this builder
+		 */
+		public Builder reservationTimeout(final Duration timeout) {
+			reservationTimeout = timeout;
+			return this;
+		}
+
+		/**
+		 * Encoding of suite file, ISO-8859-15 if not set
+		 *
+		 * @param inCharset is suite encoding
+		 *
+		 * @return this builder
+		 */
+		public Builder charset(final Charset inCharset) {
+			charset = inCharset;
+			return this;
+		}
+
+		/**
+		 * If true, first line of suite file is a header and is skipped
+		 *
+		 * @param skip is true to skip first line
+		 *
+		 * @return this builder
+		 */
+		public Builder skipHeader(final boolean skip) {
+			skipHeader = skip;
+			return this;
+		}
+
+		/**
+		 * It creates the configured runner
+		 *
+		 * @return a new {@code SuiteRunner}
+		 */
+		public SuiteRunner build() {
+			return new SuiteRunner(this);
+		}
+	}
+}
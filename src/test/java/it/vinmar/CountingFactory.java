@@ -0,0 +1,96 @@
+package it.vinmar;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.vinmar.ResourceArbiter.Factory;
+
+/**
+ * Thread safe factory of increasing integers that can simulate a slow creation
+ */
+class CountingFactory implements Factory<Integer> {
+
+	final AtomicInteger counter = new AtomicInteger(0);
+
+	final Set<Integer> closed = ConcurrentHashMap.newKeySet();
+
+	final Set<Integer> dead = ConcurrentHashMap.newKeySet();
+
+	volatile long creationDelayMillis = 0L;
+
+	volatile long closeDelayMillis = 0L;
+
+	volatile boolean failing = false;
+
+	/**
+	 * If set, each creation counts it down and waits until it reaches zero, up to ten seconds
+	 */
+	volatile CountDownLatch gate = null;
+
+	/**
+	 * Number of creations in progress
+	 */
+	final AtomicInteger creating = new AtomicInteger(0);
+
+	/**
+	 * Max number of creations seen in progress at same time
+	 */
+	final AtomicInteger maxCreating = new AtomicInteger(0);
+
+	@Override
+	public Integer newResource() {
+		if (failing) {
+			throw new IllegalStateException("creation failed");
+		}
+		maxCreating.accumulateAndGet(creating.incrementAndGet(), Math::max);
+		try {
+			final CountDownLatch latch = gate;
+			if (latch != null) {
+				latch.countDown();
+				latch.await(10, TimeUnit.SECONDS);
+			}
+			if (creationDelayMillis > 0L) {
+				Thread.sleep(creationDelayMillis);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			creating.decrementAndGet();
+		}
+		return counter.incrementAndGet();
+	}
+
+	@Override
+	public void closeResource(Integer item) {
+		if (closeDelayMillis > 0L) {
+			try {
+				Thread.sleep(closeDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		closed.add(item);
+	}
+
+	@Override
+	public boolean validate(Integer item) {
+		return !dead.contains(item);
+	}
+
+	/**
+	 * It polls a condition reached asynchronously, failing after ten seconds
+	 */
+	static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "Condition not reached in time");
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static it.vinmar.CountingFactory.awaitCondition;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class HostAdmissionTest {
+
+	/**
+	 * Host readings set by test
+	 */
+	static final class FakeProbe implements HostAdmission.Probe {
+
+		volatile double cpu = 0.1;
+
+		volatile long memory = 2L << 30;
+
+		@Override
+		public double cpuLoad() {
+			return cpu;
+		}
+
+		@Override
+		public double loadPerCore() {
+			return -1.0;
+		}
+
+		@Override
+		public long availableMemory() {
+			return memory;
+		}
+	}
+
+	/**
+	 * Arbiters built by current test, shut down after it
+	 */
+	private final List<ResourceArbiter<?>> arbiters = new ArrayList<>();
+
+	/**
+	 * It registers an arbiter to be shut down after current test
+	 */
+	private <T> ResourceArbiter<T> track(ResourceArbiter<T> arbiter) {
+		arbiters.add(arbiter);
+		return arbiter;
+	}
+
+	@AfterEach
+	public void shutdownArbiters() {
+		for (ResourceArbiter<?> arbiter : arbiters) {
+			try {
+				arbiter.shutdown(Duration.ZERO);
+			} catch (IllegalStateException e) {
+				// already shut down by test
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryOfCreationsInProgress() {
+
+		final FakeProbe probe = new FakeProbe();
+		probe.memory = 1600L << 20;
+
+		// memory of creations in progress is accounted before OS sees it
+		final HostAdmission burst = HostAdmission.builder()
+				.probe(probe)
+				.minAvailableMemory(1L << 30)
+				.memoryPerResource(256L << 20)
+				.maxWait(Duration.ZERO)
+				.build();
+
+		assertEquals(HostAdmission.Outcome.ADMITTED, burst.acquire());
+		assertEquals(HostAdmission.Outcome.ADMITTED, burst.acquire());
+		assertEquals(HostAdmission.Outcome.REFUSED, burst.acquire());
+		assertTrue(burst.isLimited());
+		burst.release();
+		assertEquals(HostAdmission.Outcome.ADMITTED, burst.acquire());
+		assertFalse(burst.isLimited());
+
+		assertThrows(IllegalArgumentException.class, () -> HostAdmission.builder().maxCpuLoad(1.5));
+	}
+
+	@Test
+	public void testRenewalRefusedAndRetried() throws Exception {
+
+		final FakeProbe probe = new FakeProbe();
+
+		final CountingFactory testFactory = new CountingFactory();
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(2)
+				.maxIterations(1)
+				.renewalThreads(1)
+				.hostAdmission(HostAdmission.builder()
+						.probe(probe)
+						.maxCpuLoad(0.9)
+						.maxWait(Duration.ofMillis(100))
+						.pollInterval(Duration.ofMillis(10))
+						.build())
+				.build());
+
+		assertFalse(underTest.getStats().isHostLimited());
+
+		// renewal is delayed, then refused and retried in background
+		probe.cpu = 0.95;
+		underTest.free(underTest.reserve().get());
+
+		awaitCondition(() -> underTest.getStats().getHostRefusals() > 0);
+		assertTrue(underTest.getStats().isHostLimited());
+		assertEquals(1, underTest.getStats().getRenewing());
+		assertEquals(2, testFactory.counter.get());
+
+		probe.cpu = 0.5;
+		awaitCondition(() -> underTest.getStats().getIdle() == 2);
+		assertFalse(underTest.getStats().isHostLimited());
+		assertEquals(3, testFactory.counter.get());
+	}
+
+	@Test
+	public void testFreeNeverWaitsForAdmission() throws Exception {
+
+		final FakeProbe probe = new FakeProbe();
+
+		final CountingFactory testFactory = new CountingFactory();
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.maxIterations(1)
+				.hostAdmission(HostAdmission.builder()
+						.probe(probe)
+						.maxCpuLoad(0.9)
+						.build())
+				.build());
+
+		// renewal waits for admission on a renewal thread, not on caller of free
+		probe.cpu = 0.95;
+		underTest.free(underTest.reserve().get());
+		assertEquals(1, underTest.getStats().getRenewing());
+		assertEquals(1, testFactory.counter.get());
+
+		probe.cpu = 0.5;
+		assertEquals(2, underTest.reserve(Duration.ofSeconds(5)).get());
+	}
+}
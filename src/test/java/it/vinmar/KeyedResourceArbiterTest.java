@@ -0,0 +1,98 @@
+package it.vinmar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static it.vinmar.CountingFactory.awaitCondition;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class KeyedResourceArbiterTest {
+
+	/**
+	 * Arbiters built by current test, shut down after it
+	 */
+	private final List<KeyedResourceArbiter<?, ?>> arbiters = new ArrayList<>();
+
+	/**
+	 * It registers an arbiter to be shut down after current test
+	 */
+	private <K, T> KeyedResourceArbiter<K, T> track(KeyedResourceArbiter<K, T> arbiter) {
+		arbiters.add(arbiter);
+		return arbiter;
+	}
+
+	@AfterEach
+	public void shutdownArbiters() {
+		for (KeyedResourceArbiter<?, ?> arbiter : arbiters) {
+			try {
+				arbiter.shutdown(Duration.ZERO);
+			} catch (IllegalStateException e) {
+				// already shut down by test
+			}
+		}
+	}
+
+	@Test
+	public void testSharesCapacity() throws Exception {
+
+		final Map<String, CountingFactory> factories = new ConcurrentHashMap<>();
+
+		KeyedResourceArbiter<String, Integer> underTest = track(KeyedResourceArbiter
+				.<String, Integer>builder(key -> factories.computeIfAbsent(key, k -> new CountingFactory()))
+				.maxTotal(2)
+				.rebalanceInterval(Duration.ofMillis(10))
+				.build());
+
+		final Integer firstA = underTest.reserve("a", Duration.ofSeconds(5)).get();
+		final Integer secondA = underTest.reserve("a", Duration.ofSeconds(5)).get();
+		assertEquals(0, underTest.getAvailable());
+
+		underTest.free("a", firstA);
+
+		// idle capacity of key a is retired for starved key b
+		assertEquals(Optional.of(1), underTest.reserve("b", Duration.ofSeconds(5)));
+		awaitCondition(() -> factories.get("a").closed.size() == 1);
+		assertEquals(0, underTest.pool("a").getStats().getIdle());
+		assertEquals(0, underTest.getAvailable());
+
+		// key a waits until capacity is freed by key b
+		final CompletableFuture<Optional<Integer>> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return underTest.reserve("a", Duration.ofSeconds(5));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		awaitCondition(() -> underTest.pool("a").getStats().getWaiters() == 1);
+		Thread.sleep(50);
+		assertFalse(waiting.isDone());
+
+		underTest.free("b", 1);
+		assertEquals(Optional.of(3), waiting.get(5, TimeUnit.SECONDS));
+		awaitCondition(() -> factories.get("b").closed.size() == 1);
+
+		final int total = underTest.pool("a").getStats().getSize() + underTest.pool("b").getStats().getSize();
+		assertEquals(2, total);
+		underTest.free("a", secondA);
+
+		// every pool is shut down, reserved resource of key a included
+		final ShutdownReport<Integer> report = underTest.shutdown(Duration.ZERO);
+		assertEquals(Collections.singletonList(3), report.getForceClosed());
+		assertEquals(1, report.getClosed());
+		assertTrue(factories.get("a").closed.containsAll(Arrays.asList(2, 3)));
+		assertEquals(2, underTest.getAvailable());
+
+		assertThrows(IllegalStateException.class, () -> underTest.reserve("c"));
+		assertThrows(IllegalStateException.class, () -> underTest.shutdown(Duration.ZERO));
+	}
+}
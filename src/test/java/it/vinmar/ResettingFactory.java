@@ -0,0 +1,24 @@
+package it.vinmar;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counting factory that cleans freed resources, except the dirty ones
+ */
+class ResettingFactory extends CountingFactory {
+
+	final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+	final AtomicInteger resets = new AtomicInteger(0);
+
+	@Override
+	public boolean reset(Integer item) {
+		resets.incrementAndGet();
+		if (failing) {
+			throw new IllegalStateException("reset failed");
+		}
+		return !dirty.contains(item);
+	}
+}
@@ -1,14 +1,38 @@
 package it.vinmar;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import static it.vinmar.CountingFactory.awaitCondition;
 import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import it.vinmar.ResourceArbiter.Factory;
@@ -16,12 +40,36 @@ import it.vinmar.ResourceArbiter.Factory;
 public class ResourceArbiterTest {
 
 	enum Action { TAKE, FREE };
-	
+
+	/**
+	 * Arbiters built by current test, shut down after it
+	 */
+	private final List<ResourceArbiter<?>> arbiters = new ArrayList<>();
+
+	/**
+	 * It registers an arbiter to be shut down after current test
+	 */
+	private <T> ResourceArbiter<T> track(ResourceArbiter<T> arbiter) {
+		arbiters.add(arbiter);
+		return arbiter;
+	}
+
+	@AfterEach
+	public void shutdownArbiters() {
+		for (ResourceArbiter<?> arbiter : arbiters) {
+			try {
+				arbiter.shutdown(Duration.ZERO);
+			} catch (IllegalStateException e) {
+				// already shut down by test
+			}
+		}
+	}
+
 	@Test
 	public void testCreateWithList() {
 			
 		List<Integer> args = Arrays.asList(1,2,3,4,5,6,7,8,9);
-		ResourceArbiter<Integer> underTest = new ResourceArbiter<>(args);
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(args));
 		
 		List<SimpleEntry<Action, Integer>> pattern = Arrays.asList(
 				new SimpleEntry<>(Action.TAKE, 1),
@@ -80,7 +128,7 @@ public class ResourceArbiterTest {
 			}
 		};
 		
-		ResourceArbiter<Integer> underTest = new ResourceArbiter<>(testFactory, nrElement, Integer.MAX_VALUE);
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(testFactory, nrElement, Integer.MAX_VALUE));
 		
 		List<SimpleEntry<Action, Integer>> pattern = Arrays.asList(
 				new SimpleEntry<>(Action.TAKE, 1),
@@ -145,7 +193,7 @@ public class ResourceArbiterTest {
 			}
 		};
 		
-		ResourceArbiter<Integer> underTest = new ResourceArbiter<>(testFactoryWithClose, nrElement, maxIterations);
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(testFactoryWithClose, nrElement, maxIterations));
 		
 		List<SimpleEntry<Action, Integer>> pattern = Arrays.asList(
 				new SimpleEntry<>(Action.TAKE, 1),
@@ -177,4 +225,1012 @@ public class ResourceArbiterTest {
 
 		assertTrue(trackClosing.entrySet().stream().allMatch(entry -> entry.getValue()));
 	}
+
+	@Test
+	public void testReserveWithTimeout() throws InterruptedException {
+
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(Arrays.asList(1)));
+
+		assertEquals(Optional.of(1), underTest.reserve(Duration.ofMillis(10)));
+
+		final long start = System.nanoTime();
+		assertEquals(Optional.empty(), underTest.reserve(Duration.ofMillis(50)));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+		underTest.free(1);
+
+		assertEquals(Optional.of(1), underTest.reserve(Duration.ZERO));
+	}
+
+	@Test
+	public void testReserveAsync() throws Exception {
+
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(Arrays.asList(1)));
+
+		assertEquals(Integer.valueOf(1), underTest.reserveAsync().getNow(null));
+
+		final CompletableFuture<Integer> first = underTest.reserveAsync();
+		final CompletableFuture<Integer> cancelled = underTest.reserveAsync();
+		final CompletableFuture<Integer> second = underTest.reserveAsync();
+		assertFalse(first.isDone());
+		assertEquals(3, underTest.getStats().getWaiters());
+
+		// cancelled waiter is withdrawn and skipped
+		cancelled.cancel(false);
+		assertEquals(2, underTest.getStats().getWaiters());
+
+		underTest.free(1);
+		assertEquals(Integer.valueOf(1), first.get(1, TimeUnit.SECONDS));
+		assertFalse(second.isDone());
+
+		underTest.free(1);
+		assertEquals(Integer.valueOf(1), second.get(1, TimeUnit.SECONDS));
+
+		final ExecutionException expired = assertThrows(ExecutionException.class,
+				() -> underTest.reserveAsync(Duration.ofMillis(50)).get(1, TimeUnit.SECONDS));
+		assertTrue(expired.getCause() instanceof TimeoutException);
+		assertEquals(0, underTest.getStats().getWaiters());
+		awaitCondition(() -> underTest.getStats().getReserveTimeouts() == 1);
+
+		underTest.free(1);
+		assertEquals(Optional.of(1), underTest.reserve());
+	}
+
+	@Test
+	public void testLeaseReclaim() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.maxHoldTime(Duration.ofMillis(100))
+				.leaseStackTraces(true)
+				.build());
+
+		try (Lease<Integer> lease = underTest.reserveLease().get()) {
+			assertEquals(Integer.valueOf(1), lease.get());
+			assertEquals(Thread.currentThread(), lease.getOwner());
+			assertTrue(lease.getAcquisitionTrace().isPresent());
+			assertEquals(Optional.empty(), underTest.reserve());
+		}
+
+		// leaked lease is reclaimed and its resource renewed
+		final Lease<Integer> leaked = underTest.reserveLease(Duration.ofSeconds(1)).get();
+		awaitCondition(leaked::isReclaimed);
+
+		assertEquals(Optional.of(2), underTest.reserve(Duration.ofSeconds(10)));
+		assertTrue(testFactory.closed.contains(1));
+		assertEquals(1, underTest.getStats().getReclaimedLeases());
+
+		// closing a reclaimed lease doesn't free resource of new owner
+		leaked.close();
+		assertEquals(Optional.empty(), underTest.reserve());
+	}
+
+	@Test
+	public void testPriorityLanes() throws Exception {
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(new CountingFactory())
+				.size(1)
+				.lane(1, 0)
+				.lane(3, 0)
+				.build());
+
+		final Integer item = underTest.reserve().get();
+
+		final List<CompletableFuture<Integer>> bulk = new ArrayList<>();
+		final List<CompletableFuture<Integer>> probes = new ArrayList<>();
+		for (int index = 0; index < 4; index++) {
+			bulk.add(underTest.reserveAsync(ResourceArbiter.DEFAULT_LANE, Duration.ofSeconds(10)));
+			probes.add(underTest.reserveAsync(1, Duration.ofSeconds(10)));
+		}
+
+		// freed resource is shared according to lane weights
+		for (int index = 0; index < 4; index++) {
+			underTest.free(item);
+		}
+		assertEquals(1, bulk.stream().filter(CompletableFuture::isDone).count());
+		assertEquals(3, probes.stream().filter(CompletableFuture::isDone).count());
+
+		assertThrows(IllegalArgumentException.class, () -> underTest.reserve(2, Duration.ZERO));
+	}
+
+	@Test
+	public void testLaneReservedCapacity() throws Exception {
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(new CountingFactory())
+				.size(2)
+				.lane(1, 0)
+				.lane(1, 1)
+				.build());
+
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		// last resource is kept for reserved lane
+		assertEquals(Optional.empty(), underTest.reserve(Duration.ofMillis(50)));
+		final CompletableFuture<Integer> bulk = underTest.reserveAsync();
+		assertEquals(Optional.of(2), underTest.reserve(1, Duration.ofSeconds(1)));
+
+		// reserved lane is at its reserved capacity, freed resource goes to default lane
+		underTest.free(1);
+		assertEquals(Integer.valueOf(1), bulk.get(1, TimeUnit.SECONDS));
+
+		underTest.free(2);
+		assertEquals(Optional.empty(), underTest.reserve());
+		assertEquals(Optional.of(2), underTest.reserve(1, Duration.ZERO));
+
+		assertThrows(IllegalArgumentException.class, () -> ResourceArbiter.builder(new CountingFactory())
+				.size(2)
+				.lane(1, 2)
+				.build());
+	}
+
+	@Test
+	public void testReservedLaneWithoutWait() throws Exception {
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(new CountingFactory())
+				.size(2)
+				.lane(1, 0)
+				.lane(1, 1)
+				.build());
+
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		// default lane waiter cannot take resource kept for reserved lane, so it doesn't stop a probe
+		final CompletableFuture<Integer> bulk = underTest.reserveAsync();
+		assertFalse(bulk.isDone());
+		assertEquals(Optional.empty(), underTest.reserve());
+		assertEquals(Optional.of(2), underTest.reserve(1, Duration.ZERO));
+
+		underTest.free(2);
+		assertEquals(Integer.valueOf(2), underTest.reserveAsync(1, Duration.ZERO).get(1, TimeUnit.SECONDS));
+
+		// reserved lane at its reserved capacity gives way to queued waiters
+		underTest.free(1);
+		assertEquals(Integer.valueOf(1), bulk.get(1, TimeUnit.SECONDS));
+		assertEquals(Optional.empty(), underTest.reserve(1, Duration.ZERO));
+	}
+
+	@Test
+	public void testBlockingReserveHandOffInOrder() throws Exception {
+
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(Arrays.asList(1)));
+
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		final CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> {
+			try {
+				return underTest.reserveInterruptibly();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);
+
+		final CompletableFuture<Optional<Integer>> second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return underTest.reserve(Duration.ofSeconds(10));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);
+
+		underTest.free(1);
+		assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+		assertFalse(second.isDone());
+
+		// non-blocking reserve cannot barge in front of queued waiter
+		assertEquals(Optional.empty(), underTest.reserve());
+
+		underTest.free(1);
+		assertEquals(Optional.of(1), second.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testInterruptedReserve() throws Exception {
+
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(Arrays.asList(1)));
+
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class, () -> underTest.reserve(Duration.ofSeconds(10)));
+
+		underTest.free(1);
+		assertEquals(Optional.of(1), underTest.reserve());
+	}
+
+	@Test
+	public void testConcurrentReserveAndFree() throws Exception {
+
+		final int nrElement = 8;
+		final int nrThreads = 32;
+		final int nrLoops = 2_000;
+
+		final List<Integer> args = IntStream.range(0, nrElement).boxed().collect(Collectors.toList());
+		final ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(args));
+
+		final AtomicIntegerArray owners = new AtomicIntegerArray(nrElement);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(nrThreads);
+		try {
+			final List<Future<?>> results = IntStream.range(0, nrThreads)
+					.mapToObj(index -> executor.submit(() -> {
+						for (int loop = 0; loop < nrLoops; loop++) {
+							final Optional<Integer> item = underTest.reserve();
+							if (item.isPresent()) {
+								assertEquals(1, owners.incrementAndGet(item.get()), "Resource reserved twice");
+								owners.decrementAndGet(item.get());
+								underTest.free(item.get());
+							}
+						}
+					}))
+					.collect(Collectors.toList());
+
+			for (Future<?> result : results) {
+				result.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(
+				args.stream().collect(Collectors.toSet()),
+				IntStream.range(0, nrElement).mapToObj(index -> underTest.reserve().get()).collect(Collectors.toSet()));
+		assertEquals(Optional.empty(), underTest.reserve());
+	}
+
+	@Test
+	public void testShardedReserveAndFree() throws Exception {
+
+		final int nrElement = 16;
+		final int nrThreads = 32;
+		final int nrLoops = 2_000;
+
+		final CountingFactory testFactory = new CountingFactory();
+		final ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(nrElement)
+				.shards(4)
+				.build());
+
+		// a thread steals from other shards when its own is empty
+		final Set<Integer> all = new HashSet<>();
+		for (int i = 0; i < nrElement; i++) {
+			all.add(underTest.reserve().get());
+		}
+		assertEquals(nrElement, all.size());
+		assertEquals(Optional.empty(), underTest.reserve());
+		all.forEach(underTest::free);
+
+		final AtomicIntegerArray owners = new AtomicIntegerArray(nrElement + 1);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(nrThreads);
+		try {
+			final List<Future<?>> results = IntStream.range(0, nrThreads)
+					.mapToObj(index -> executor.submit(() -> {
+						for (int loop = 0; loop < nrLoops; loop++) {
+							final Optional<Integer> item = underTest.reserve();
+							if (item.isPresent()) {
+								assertEquals(1, owners.incrementAndGet(item.get()), "Resource reserved twice");
+								owners.decrementAndGet(item.get());
+								underTest.free(item.get());
+							}
+						}
+					}))
+					.collect(Collectors.toList());
+
+			for (Future<?> result : results) {
+				result.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(nrElement, underTest.getStats().getIdle());
+		assertThrows(IllegalArgumentException.class, () -> ResourceArbiter.builder(testFactory).shards(0));
+	}
+
+	@Test
+	public void testBackgroundRenewalWithSpares() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.maxIterations(1)
+				.spares(1)
+				.build());
+
+		// replenishment of spare is held until test releases it
+		testFactory.gate = new CountDownLatch(2);
+
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		underTest.free(1);
+
+		// spare is swapped in while its replacement is still being created
+		assertEquals(Optional.of(2), underTest.reserve());
+		awaitCondition(() -> testFactory.creating.get() == 1);
+		assertEquals(2, testFactory.counter.get());
+
+		testFactory.gate.countDown();
+		awaitCondition(() -> testFactory.closed.contains(1));
+		awaitCondition(() -> testFactory.counter.get() == 3);
+
+		// replenished spare takes place of second exhausted item
+		underTest.free(2);
+		assertEquals(Optional.of(3), underTest.reserve());
+	}
+
+	@Test
+	public void testBackgroundRenewalWithoutSpares() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.maxIterations(1)
+				.renewalThreads(1)
+				.build());
+
+		// renewal is held until test releases it
+		testFactory.gate = new CountDownLatch(2);
+
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		underTest.free(1);
+
+		// free returned while renewal is still in progress
+		awaitCondition(() -> testFactory.creating.get() == 1);
+		assertEquals(1, underTest.getStats().getRenewing());
+		assertEquals(Optional.empty(), underTest.reserve());
+
+		testFactory.gate.countDown();
+		assertEquals(Optional.of(2), underTest.reserve(Duration.ofSeconds(10)));
+		awaitCondition(() -> testFactory.closed.contains(1));
+	}
+
+	@Test
+	public void testElasticGrowAndShrink() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(0)
+				.maxTotal(3)
+				.idleTimeout(Duration.ofMillis(200))
+				.renewalThreads(3)
+				.build());
+
+		assertEquals(0, testFactory.counter.get());
+
+		final Set<Integer> reserved = new HashSet<>();
+		for (int index = 0; index < 3; index++) {
+			reserved.add(underTest.reserve(Duration.ofSeconds(10)).get());
+		}
+		assertEquals(3, reserved.size());
+
+		// max size reached
+		assertEquals(Optional.empty(), underTest.reserve(Duration.ofMillis(100)));
+		assertEquals(3, testFactory.counter.get());
+
+		reserved.forEach(underTest::free);
+
+		awaitCondition(() -> testFactory.closed.size() == 3);
+
+		// pool grows again on demand
+		assertEquals(Optional.of(4), underTest.reserve(Duration.ofSeconds(10)));
+	}
+
+	@Test
+	public void testElasticKeepsMinIdle() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(0)
+				.minIdle(1)
+				.maxTotal(2)
+				.idleTimeout(Duration.ofMillis(100))
+				.build());
+
+		assertEquals(1, testFactory.counter.get());
+
+		assertEquals(Optional.of(1), underTest.reserve());
+		awaitCondition(() -> testFactory.counter.get() == 2);
+
+		underTest.free(1);
+
+		// one idle item is surplus and gets closed
+		awaitCondition(() -> testFactory.closed.size() == 1);
+		Thread.sleep(300);
+		assertEquals(1, testFactory.closed.size());
+		assertTrue(underTest.reserve().isPresent());
+	}
+
+	@Test
+	public void testReserveWithAffinity() throws Exception {
+
+		List<Integer> args = Arrays.asList(1, 2, 3);
+		ResourceArbiter<Integer> underTest = track(new ResourceArbiter<>(args));
+
+		final Object hostA = Affinity.host("https://www.example.org/path?query");
+		final Object hostB = Affinity.host("www.example.com");
+
+		assertEquals(hostA, Affinity.host("http://WWW.EXAMPLE.ORG"));
+
+		// first time any idle item
+		assertEquals(Optional.of(1), underTest.reserveFor(hostA));
+		assertEquals(Optional.of(2), underTest.reserveFor(hostB));
+		underTest.free(1);
+		underTest.free(2);
+
+		// item 1 is sticky for host A even if 2 is on top of idle stack
+		assertEquals(Optional.of(1), underTest.reserveFor(hostA));
+		assertEquals(Optional.of(2), underTest.reserveFor(hostB, Duration.ofSeconds(1)));
+		underTest.free(2);
+
+		// preferred item busy, fallback to any idle one
+		assertEquals(Optional.of(2), underTest.reserveFor(hostA));
+		assertEquals(Optional.of(3), underTest.reserve());
+		underTest.free(1);
+
+		// stale idle stack entry of item 1 is skipped
+		assertEquals(Optional.of(1), underTest.reserveFor(Affinity.currentThread()));
+		assertEquals(Optional.empty(), underTest.reserve());
+
+		underTest.free(1);
+		underTest.free(2);
+		underTest.free(3);
+		assertEquals(
+				new HashSet<>(args),
+				IntStream.range(0, 3).mapToObj(index -> underTest.reserve().get()).collect(Collectors.toSet()));
+		assertEquals(Optional.empty(), underTest.reserve());
+	}
+
+	@Test
+	public void testParallelWarmUp() throws Exception {
+
+		// creations go on only when all four are in progress at same time
+		final CountingFactory testFactory = new CountingFactory();
+		testFactory.gate = new CountDownLatch(4);
+
+		final List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(4)
+				.warmUpConcurrency(4)
+				.warmUpListener((ready, failed, total) -> progress.add(ready))
+				.build());
+
+		assertEquals(4, testFactory.maxCreating.get());
+		assertTrue(underTest.awaitWarmUp(Duration.ZERO));
+		assertEquals(Arrays.asList(1, 2, 3, 4), progress.stream().sorted().collect(Collectors.toList()));
+
+		assertEquals(
+				new HashSet<>(Arrays.asList(1, 2, 3, 4)),
+				IntStream.range(0, 4).mapToObj(index -> underTest.reserve().get()).collect(Collectors.toSet()));
+	}
+
+	@Test
+	public void testBackgroundWarmUpWithRetry() throws Exception {
+
+		final AtomicInteger attempts = new AtomicInteger(0);
+
+		final CountingFactory testFactory = new CountingFactory() {
+			@Override
+			public Integer newResource() {
+				// first attempt of a resource fails
+				if (attempts.incrementAndGet() == 2) {
+					throw new IllegalStateException("Browser did not start");
+				}
+				return super.newResource();
+			}
+		};
+		// first creation is held until test releases it
+		testFactory.gate = new CountDownLatch(2);
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(3)
+				.warmUpConcurrency(1)
+				.warmUpInBackground(true)
+				.build());
+
+		// build returned while first creation is still in progress
+		awaitCondition(() -> testFactory.creating.get() == 1);
+		assertEquals(0, testFactory.counter.get());
+		assertFalse(underTest.awaitWarmUp(Duration.ZERO));
+		testFactory.gate.countDown();
+
+		// first resource is served before warm up completion
+		assertEquals(Optional.of(1), underTest.reserve(Duration.ofSeconds(5)));
+		assertFalse(underTest.awaitWarmUp(Duration.ZERO));
+
+		assertTrue(underTest.awaitWarmUp(Duration.ofSeconds(10)));
+		assertEquals(3, testFactory.counter.get());
+		assertTrue(underTest.reserve().isPresent());
+		assertTrue(underTest.reserve().isPresent());
+		assertEquals(Optional.empty(), underTest.reserve());
+	}
+
+	@Test
+	public void testWarmUpFailureRetriedInBackground() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+		testFactory.failing = true;
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(2)
+				.warmUpConcurrency(2)
+				.warmUpInBackground(true)
+				.build());
+
+		// every attempt fails, slots stay out of service instead of leaving the pool
+		assertTrue(underTest.awaitWarmUp(Duration.ofSeconds(10)));
+		assertEquals(2, underTest.getStats().getRenewing());
+		assertEquals(Optional.empty(), underTest.reserve());
+
+		// outage is over, pool reaches its size
+		testFactory.failing = false;
+		assertTrue(underTest.reserve(Duration.ofSeconds(5)).isPresent());
+		assertTrue(underTest.reserve(Duration.ofSeconds(5)).isPresent());
+		assertEquals(2, underTest.getStats().getSize());
+	}
+
+	@Test
+	public void testStatsAndMBean() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(2)
+				.maxIterations(2)
+				.jmxName("testStatsAndMBean")
+				.build());
+
+		assertEquals(Optional.of(1), underTest.reserve());
+		assertEquals(Optional.of(2), underTest.reserve());
+		assertEquals(Optional.empty(), underTest.reserve());
+		assertEquals(Optional.empty(), underTest.reserve(Duration.ofMillis(20)));
+
+		ArbiterStats stats = underTest.getStats();
+		assertEquals(2, stats.getCapacity());
+		assertEquals(2, stats.getSize());
+		assertEquals(0, stats.getIdle());
+		assertEquals(2, stats.getBusy());
+		assertEquals(2L, stats.getReservations());
+		assertEquals(1L, stats.getEmptyReserveMisses());
+		assertEquals(1L, stats.getReserveTimeouts());
+		assertEquals(2L, stats.getCreations());
+
+		underTest.free(1);
+		assertEquals(Optional.of(1), underTest.reserve(Duration.ofMillis(20)));
+		underTest.free(1); // exhausted and renewed
+
+		stats = underTest.getStats();
+		assertEquals(1, stats.getIdle());
+		assertEquals(1L, stats.getRenewals());
+		assertEquals(3L, stats.getCreations());
+		assertEquals(2L, stats.getHoldTime().getCount());
+		assertTrue(stats.getHoldTime().getMaxMillis() >= stats.getHoldTime().getP50Millis());
+
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName("it.vinmar:type=ResourceArbiter,name=\"testStatsAndMBean\"");
+
+		assertEquals(1, server.getAttribute(name, "Idle"));
+		assertEquals(1L, server.getAttribute(name, "Renewals"));
+		assertEquals(2L, ((CompositeData) server.getAttribute(name, "HoldTime")).get("count"));
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(3)
+				.renewalThreads(1)
+				.jmxName("testShutdown")
+				.build());
+
+		final Lease<Integer> lease = underTest.reserveLease().get();
+		final Integer returned = underTest.reserve().get();
+		final Integer kept = underTest.reserve().get();
+
+		final CompletableFuture<Integer> waiting = underTest.reserveAsync();
+		assertFalse(waiting.isDone());
+
+		// a resource freed within grace period is closed by caller of free
+		final CompletableFuture<Void> freeing = CompletableFuture.runAsync(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			underTest.free(returned);
+		});
+
+		final ShutdownReport<Integer> report = underTest.shutdown(Duration.ofMillis(500));
+		freeing.get(5, TimeUnit.SECONDS);
+
+		final ExecutionException failed = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+		assertTrue(failed.getCause() instanceof IllegalStateException);
+		assertEquals(1, report.getCancelledWaiters());
+
+		assertFalse(report.isClean());
+		assertEquals(new HashSet<>(Arrays.asList(lease.get(), kept)), new HashSet<>(report.getForceClosed()));
+		assertEquals(1, report.getClosed());
+		assertTrue(report.getElapsed().toMillis() >= 500L);
+		assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), testFactory.closed);
+		assertEquals(3, testFactory.counter.get());
+		assertTrue(lease.isReclaimed());
+
+		// nothing is accepted afterwards
+		assertThrows(IllegalStateException.class, () -> underTest.reserve());
+		assertThrows(IllegalStateException.class, () -> underTest.shutdown(Duration.ZERO));
+		lease.close();
+		underTest.free(kept);
+		assertEquals(0, underTest.getStats().getSize());
+
+		assertFalse(ManagementFactory.getPlatformMBeanServer()
+				.isRegistered(new ObjectName("it.vinmar:type=ResourceArbiter,name=\"testShutdown\"")));
+
+		// with every resource idle shutdown doesn't wait
+		final ResourceArbiter<Integer> quiet = track(ResourceArbiter.builder(new CountingFactory()).size(2).build());
+		final ShutdownReport<Integer> quick = quiet.shutdown(Duration.ofSeconds(30));
+		assertTrue(quick.isClean());
+		assertEquals(2, quick.getClosed());
+		assertTrue(quick.getElapsed().getSeconds() < 5L);
+	}
+
+	@Test
+	public void testShutdownWithSpares() throws Exception {
+
+		// grace period waits for retired resources still queued for close
+		final CountingFactory patient = new CountingFactory();
+		patient.closeDelayMillis = 300L;
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(patient)
+				.size(2)
+				.spares(2)
+				.maxIterations(1)
+				.build());
+
+		Integer first = underTest.reserve().get();
+		Integer second = underTest.reserve().get();
+		underTest.free(first);
+		underTest.free(second);
+
+		// exhausted resources are replaced by spares, new spares are refused after shutdown
+		ShutdownReport<Integer> report = underTest.shutdown(Duration.ofSeconds(5));
+
+		assertTrue(report.isClean());
+		assertEquals(4, patient.counter.get());
+		assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4)), patient.closed);
+		assertEquals(4, report.getClosed());
+
+		// without grace period retired resources still queued are closed by shutdown
+		final CountingFactory hasty = new CountingFactory();
+		hasty.closeDelayMillis = 300L;
+
+		underTest = track(ResourceArbiter.builder(hasty)
+				.size(2)
+				.spares(2)
+				.maxIterations(1)
+				.build());
+
+		first = underTest.reserve().get();
+		second = underTest.reserve().get();
+		underTest.free(first);
+		underTest.free(second);
+
+		report = underTest.shutdown(Duration.ZERO);
+
+		assertTrue(report.getClosed() >= 3);
+		awaitCondition(() -> hasty.closed.size() == 4);
+		assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4)), hasty.closed);
+	}
+
+	@Test
+	public void testValidateOnBorrow() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(2)
+				.validateOnBorrow(true)
+				.build());
+
+		testFactory.dead.add(2);
+
+		assertEquals(Optional.of(1), underTest.reserve());
+		underTest.free(1);
+		testFactory.dead.add(1);
+
+		// invalid ones are renewed in background as 3 and 4
+		final Set<Integer> renewed = new HashSet<>();
+		renewed.add(underTest.reserve(Duration.ofSeconds(5)).get());
+		renewed.add(underTest.reserve(Duration.ofSeconds(5)).get());
+		assertEquals(new HashSet<>(Arrays.asList(3, 4)), renewed);
+		assertEquals(Optional.empty(), underTest.reserve());
+
+		awaitCondition(() -> testFactory.closed.containsAll(Arrays.asList(1, 2)));
+		assertEquals(2L, underTest.getStats().getInvalidations());
+
+		// resource handed to a waiter is validated too
+		final CompletableFuture<Optional<Integer>> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return underTest.reserve(Duration.ofSeconds(5));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		awaitCondition(() -> underTest.getStats().getWaiters() == 1);
+
+		testFactory.dead.add(3);
+		underTest.free(3);
+
+		assertEquals(Optional.of(5), waiting.get(5, TimeUnit.SECONDS));
+		assertEquals(3L, underTest.getStats().getInvalidations());
+	}
+
+	@Test
+	public void testValidateOnBorrowWithFailingFactory() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.validateOnBorrow(true)
+				.build());
+
+		// renewal of an invalid resource fails, caller just misses and slot is renewed later
+		testFactory.dead.add(1);
+		testFactory.failing = true;
+
+		assertEquals(Optional.empty(), underTest.reserve());
+		assertEquals(1, underTest.getStats().getRenewing());
+
+		testFactory.failing = false;
+
+		assertEquals(Optional.of(2), underTest.reserve(Duration.ofSeconds(5)));
+		assertEquals(1, underTest.getStats().getBusy());
+	}
+
+	@Test
+	public void testBackgroundEviction() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(3)
+				.validationInterval(Duration.ofMillis(10))
+				.build());
+
+		testFactory.dead.add(2);
+
+		awaitCondition(() -> testFactory.closed.contains(2) && underTest.getStats().getIdle() == 3);
+
+		final Set<Integer> reserved = new HashSet<>();
+		for (int i = 0; i < 3; i++) {
+			reserved.add(underTest.reserve().get());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(1, 3, 4)), reserved);
+		assertEquals(1L, underTest.getStats().getInvalidations());
+	}
+
+	@Test
+	public void testResetOnFree() throws Exception {
+
+		final ResettingFactory testFactory = new ResettingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.maxIterations(3)
+				.build());
+
+		// reset resource goes back into pool
+		assertEquals(Optional.of(1), underTest.reserve());
+		underTest.free(1);
+		assertEquals(1, testFactory.resets.get());
+		assertEquals(Optional.of(1), underTest.reserve());
+
+		// a resource that cannot be cleaned is renewed before max iterations
+		testFactory.dirty.add(1);
+		underTest.free(1);
+		assertEquals(Optional.of(2), underTest.reserve(Duration.ofSeconds(5)));
+		awaitCondition(() -> testFactory.closed.contains(1));
+		assertEquals(1L, underTest.getStats().getInvalidations());
+
+		// renewal of an exhausted resource skips reset
+		underTest.free(2);
+		assertEquals(Optional.of(2), underTest.reserve());
+		underTest.free(2);
+		assertEquals(Optional.of(2), underTest.reserve());
+		final int resets = testFactory.resets.get();
+		underTest.free(2);
+		assertEquals(resets, testFactory.resets.get());
+		assertEquals(Optional.of(3), underTest.reserve(Duration.ofSeconds(5)));
+
+		// failed reset and failed renewal on caller thread don't reach caller of free, slot leaves the pool
+		testFactory.failing = true;
+		underTest.free(3);
+		assertTrue(testFactory.closed.contains(3));
+		assertEquals(0, underTest.getStats().getSize());
+		assertEquals(Optional.empty(), underTest.reserve());
+	}
+
+	@Test
+	public void testResetOnFreeWithRenewalThreads() throws Exception {
+
+		final ResettingFactory testFactory = new ResettingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.renewalThreads(1)
+				.build());
+
+		// failed reset is renewed in background, retried until creation succeeds
+		assertEquals(Optional.of(1), underTest.reserve());
+		testFactory.failing = true;
+		underTest.free(1);
+		assertEquals(1, underTest.getStats().getRenewing());
+		assertEquals(Optional.empty(), underTest.reserve());
+
+		testFactory.failing = false;
+		assertEquals(Optional.of(2), underTest.reserve(Duration.ofSeconds(5)));
+		awaitCondition(() -> testFactory.closed.contains(1));
+	}
+
+	@Test
+	public void testRecyclePolicy() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+		final Set<Integer> forgotten = ConcurrentHashMap.newKeySet();
+		final Set<Integer> degraded = ConcurrentHashMap.newKeySet();
+
+		final RecyclePolicy<Integer> onDemand = new RecyclePolicy<Integer>() {
+
+			@Override
+			public boolean shouldRecycle(Integer resource, long uses, Duration age) {
+				return degraded.contains(resource);
+			}
+
+			@Override
+			public void forget(Integer resource) {
+				forgotten.add(resource);
+			}
+		};
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(1)
+				.recyclePolicy(onDemand.or(RecyclePolicy.maxUses(3)))
+				.build());
+
+		// retired by uses
+		for (int i = 0; i < 3; i++) {
+			assertEquals(Optional.of(1), underTest.reserve());
+			underTest.free(1);
+		}
+		assertEquals(Optional.of(2), underTest.reserve());
+		assertTrue(forgotten.contains(1));
+
+		// retired on demand
+		degraded.add(2);
+		underTest.free(2);
+		assertEquals(Optional.of(3), underTest.reserve());
+		underTest.free(3);
+
+		// retired by age
+		ResourceArbiter<Integer> aged = track(ResourceArbiter.builder(new CountingFactory())
+				.size(1)
+				.recyclePolicy(RecyclePolicy.maxAge(Duration.ofMillis(50)))
+				.build());
+
+		assertEquals(Optional.of(1), aged.reserve());
+		aged.free(1);
+		assertEquals(Optional.of(1), aged.reserve());
+		Thread.sleep(60);
+		aged.free(1);
+		assertEquals(Optional.of(2), aged.reserve());
+	}
+
+	@Test
+	public void testJitteredLifetimes() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(20)
+				.maxIterations(10)
+				.lifetimeJitter(0.5)
+				.build());
+
+		final Map<Integer, Integer> retiredAtRound = new HashMap<>();
+
+		for (int round = 1; round <= 15; round++) {
+			final List<Integer> reserved = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				reserved.add(underTest.reserve().get());
+			}
+			reserved.forEach(underTest::free);
+
+			for (int item = 1; item <= 20; item++) {
+				if (testFactory.closed.contains(item)) {
+					retiredAtRound.putIfAbsent(item, round);
+				}
+			}
+		}
+
+		// every initial resource is retired within jitter bounds, not all in same round
+		assertEquals(20, retiredAtRound.size());
+		assertTrue(retiredAtRound.values().stream().allMatch(round -> round >= 5 && round <= 15));
+		assertTrue(new HashSet<>(retiredAtRound.values()).size() > 1);
+	}
+
+	@Test
+	public void testMaxConcurrentRenewals() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(2)
+				.maxIterations(1)
+				.maxConcurrentRenewals(1)
+				.build());
+
+		assertEquals(Optional.of(1), underTest.reserve());
+		assertEquals(Optional.of(2), underTest.reserve());
+
+		testFactory.creationDelayMillis = 300L;
+		final CompletableFuture<Void> renewal = CompletableFuture.runAsync(() -> underTest.free(1));
+		awaitCondition(() -> underTest.getStats().getHoldTime().getCount() == 1);
+		Thread.sleep(50);
+
+		// renewal of 1 in progress, so exhausted 2 keeps serving
+		underTest.free(2);
+		assertEquals(1L, underTest.getStats().getDeferredRenewals());
+		assertEquals(Optional.of(2), underTest.reserve());
+
+		renewal.get(5, TimeUnit.SECONDS);
+		testFactory.creationDelayMillis = 0L;
+
+		underTest.free(2);
+		assertTrue(testFactory.closed.containsAll(Arrays.asList(1, 2)));
+		assertEquals(2L, underTest.getStats().getRenewals());
+	}
+
+	@Test
+	public void testMaxConcurrentRenewalsWithRetry() throws Exception {
+
+		final CountingFactory testFactory = new CountingFactory();
+
+		ResourceArbiter<Integer> underTest = track(ResourceArbiter.builder(testFactory)
+				.size(2)
+				.maxIterations(1)
+				.maxConcurrentRenewals(1)
+				.renewalThreads(2)
+				.build());
+
+		assertEquals(Optional.of(1), underTest.reserve());
+		assertEquals(Optional.of(2), underTest.reserve());
+
+		// failed renewal of 1 waits for its retry, still counted as in progress
+		testFactory.failing = true;
+		underTest.free(1);
+		awaitCondition(() -> underTest.getStats().getCreationFailures() == 1);
+
+		underTest.free(2);
+		assertEquals(1L, underTest.getStats().getDeferredRenewals());
+		assertEquals(Optional.of(2), underTest.reserve());
+
+		testFactory.failing = false;
+		assertEquals(Optional.of(3), underTest.reserve(Duration.ofSeconds(5)));
+
+		// permit is given back once retry succeeds
+		underTest.free(2);
+		assertEquals(1L, underTest.getStats().getDeferredRenewals());
+		assertEquals(Optional.of(4), underTest.reserve(Duration.ofSeconds(5)));
+	}
 }
@@ -1,20 +1,57 @@
 package it.vinmar.factory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.FirefoxProfile;
 import org.openqa.selenium.phantomjs.PhantomJSDriver;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
+import io.github.bonigarcia.wdm.DriverManagerType;
+
+import it.vinmar.RecyclePolicy;
 import it.vinmar.factory.WebDriverConf;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Tag;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class WebDriverFactoryTest {
 
@@ -123,4 +160,397 @@ public class WebDriverFactoryTest {
 		
 		System.clearProperty("factory.debug");
 	}	
+
+	@Test
+	@Tag("chrome")
+	public void testValidateAfterQuit() {
+
+		WebDriverFactory underTest = new WebDriverFactory(new WebDriverConf("CHROME_HEADLESS"));
+
+		WebDriver driver = underTest.newResource();
+
+		assertTrue(underTest.validate(driver));
+
+		underTest.closeResource(driver);
+
+		assertFalse(underTest.validate(driver));
+	}
+
+	/**
+	 * Stub browser answering page load timing and JS heap probes
+	 */
+	private static WebDriver stubDriver(final AtomicLong navigationStart, final AtomicLong loadMillis, final AtomicLong heap) {
+		return (WebDriver) Proxy.newProxyInstance(
+				WebDriverFactoryTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class, JavascriptExecutor.class },
+				(proxy, method, args) -> {
+					if (method.getName().equals("executeScript")) {
+						return ((String) args[0]).contains("memory")
+								? heap.get()
+								: Arrays.asList(navigationStart.get(), loadMillis.get());
+					}
+					if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Stub browser with a set of windows, last one is current window.
+	 * It records every call of driver and its nested interfaces, except identity ones.
+	 */
+	private static Object recordingDriver(final Class<?> type, final List<String> calls, final List<String> windows) {
+		return Proxy.newProxyInstance(
+				WebDriverFactoryTest.class.getClassLoader(),
+				type == WebDriver.class ? new Class<?>[] { WebDriver.class, JavascriptExecutor.class } : new Class<?>[] { type },
+				(proxy, method, args) -> {
+					if (!method.getName().equals("hashCode") && !method.getName().equals("equals")) {
+						calls.add(args == null ? method.getName() : method.getName() + " " + args[0]);
+					}
+					switch (method.getName()) {
+					case "getWindowHandles":
+						return new LinkedHashSet<>(windows);
+					case "getWindowHandle":
+						return windows.isEmpty() ? null : windows.get(windows.size() - 1);
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						return method.getReturnType().isInterface() && method.getReturnType() != Set.class
+								? recordingDriver(method.getReturnType(), calls, windows)
+								: null;
+					}
+				});
+	}
+
+	@Test
+	public void testResetDriver() {
+
+		final List<String> calls = new ArrayList<>();
+		final List<String> windows = new ArrayList<>(Collections.singletonList("main"));
+		final WebDriver driver = (WebDriver) recordingDriver(WebDriver.class, calls, windows);
+
+		WebDriverFactory underTest = new WebDriverFactory(new WebDriverConf("CHROME_HEADLESS"));
+
+		// a driver whose session window is unknown cannot be reset
+		assertFalse(underTest.reset(driver));
+
+		underTest.trackMainWindow(driver);
+
+		// popups come first in window handles, session window is kept anyway
+		windows.add(0, "popup");
+		windows.add(0, "tab");
+		calls.clear();
+
+		assertTrue(underTest.reset(driver));
+		assertEquals(Arrays.asList(
+				"getWindowHandles",
+				"switchTo", "window tab", "close",
+				"switchTo", "window popup", "close",
+				"switchTo", "window main",
+				"manage", "deleteAllCookies",
+				"executeScript try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) { }",
+				"navigate", "to about:blank"),
+				calls);
+
+		// session window closed by test
+		windows.remove("main");
+		assertFalse(underTest.reset(driver));
+
+		// a closed driver is forgotten
+		underTest.closeResource(driver);
+		windows.add("main");
+		assertFalse(underTest.reset(driver));
+	}
+
+	@Test
+	public void testBrowserRecycling() {
+
+		final AtomicLong navigationStart = new AtomicLong(0L);
+		final AtomicLong loadMillis = new AtomicLong(100L);
+		final AtomicLong heap = new AtomicLong(10L << 20);
+
+		final WebDriver driver = stubDriver(navigationStart, loadMillis, heap);
+
+		final RecyclePolicy<WebDriver> memory = BrowserRecycling.maxJsHeap(64L << 20);
+		assertFalse(memory.shouldRecycle(driver, 1L, Duration.ZERO));
+		heap.set(100L << 20);
+		assertTrue(memory.shouldRecycle(driver, 1L, Duration.ZERO));
+
+		final RecyclePolicy<WebDriver> latency = BrowserRecycling.latencyDegradation(2, 2, 2.0);
+
+		// baseline of 100ms
+		for (int i = 0; i < 2; i++) {
+			navigationStart.incrementAndGet();
+			assertFalse(latency.shouldRecycle(driver, i, Duration.ZERO));
+		}
+
+		// same page is not counted twice
+		loadMillis.set(1000L);
+		assertFalse(latency.shouldRecycle(driver, 2L, Duration.ZERO));
+
+		navigationStart.incrementAndGet();
+		assertFalse(latency.shouldRecycle(driver, 3L, Duration.ZERO));
+		navigationStart.incrementAndGet();
+		assertTrue(latency.shouldRecycle(driver, 4L, Duration.ZERO));
+
+		// a forgotten driver builds a new baseline
+		latency.forget(driver);
+		navigationStart.incrementAndGet();
+		assertFalse(latency.shouldRecycle(driver, 0L, Duration.ZERO));
+	}
+
+	@Test
+	public void testOfflineDriverDirectory() throws Exception {
+
+		final Path driverDir = Files.createTempDirectory("drivers");
+		final String previous = System.getProperty("webdriver.chrome.driver");
+
+		System.setProperty(WebDriverFactory.DRIVER_DIR_PROPERTY, driverDir.toString());
+		try {
+			WebDriverFactory underTest = new WebDriverFactory(new WebDriverConf("CHROME_HEADLESS"));
+
+			assertThrows(IllegalStateException.class, () -> underTest.resolveDriver(DriverManagerType.CHROME));
+
+			final Path binary = Files.createFile(driverDir.resolve(WebDriverFactory.driverFileName(DriverManagerType.CHROME)));
+			binary.toFile().setExecutable(true);
+
+			assertEquals(binary.toString(), underTest.resolveDriver(DriverManagerType.CHROME));
+			assertEquals(binary.toString(), System.getProperty("webdriver.chrome.driver"));
+		} finally {
+			System.clearProperty(WebDriverFactory.DRIVER_DIR_PROPERTY);
+			if (previous != null) {
+				System.setProperty("webdriver.chrome.driver", previous);
+			} else {
+				System.clearProperty("webdriver.chrome.driver");
+			}
+		}
+	}
+
+	@Test
+	public void testFirefoxProfileTemplate() throws Exception {
+
+		WebDriverConf conf = new WebDriverConf("FIREFOX", "http://localhost:4444/wd/hub", null, "localhost");
+
+		WebDriverFactory underTest = new WebDriverFactory(conf);
+
+		final FirefoxOptions template = (FirefoxOptions) underTest.getOptionsTemplate();
+		assertSame(template, underTest.getOptionsTemplate());
+
+		// profile is zipped once and shared by every session
+		final FirefoxProfile profile = template.getProfile();
+		final String json = profile.toJson();
+		assertSame(json, profile.toJson());
+		assertEquals("localhost", FirefoxProfile.fromJson(json).getStringPreference("network.proxy.no_proxies_on", null));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testPageLoadingOptions() throws Exception {
+
+		final WebDriverConf chromeConf = new WebDriverConf("CHROME_HEADLESS")
+				.withPageLoadStrategy("EAGER")
+				.withBlockImages(true)
+				.withBlockedHosts("ads.example.org, *.tracker.net")
+				.withPageLoadTimeout(Duration.ofSeconds(30));
+
+		assertEquals(chromeConf, new WebDriverConf("CHROME_HEADLESS")
+				.withBlockedHosts("ads.example.org,*.tracker.net")
+				.withBlockImages(true)
+				.withPageLoadTimeout(Duration.ofSeconds(30))
+				.withPageLoadStrategy("eager"));
+		assertFalse(chromeConf.equals(new WebDriverConf("CHROME_HEADLESS")));
+		assertThrows(IllegalArgumentException.class, () -> chromeConf.withPageLoadStrategy("lazy"));
+		assertThrows(IllegalArgumentException.class, () -> chromeConf.withScriptTimeout(Duration.ZERO));
+
+		final Capabilities chrome = new WebDriverFactory(chromeConf).getOptionsTemplate();
+		assertEquals("eager", chrome.getCapability(CapabilityType.PAGE_LOAD_STRATEGY).toString());
+
+		final Map<String, Object> chromeOptions = (Map<String, Object>) chrome.asMap().get(ChromeOptions.CAPABILITY);
+		assertTrue(((List<String>) chromeOptions.get("args"))
+				.contains("--host-resolver-rules=MAP ads.example.org ~NOTFOUND, MAP *.tracker.net ~NOTFOUND"));
+		assertEquals(2, ((Map<String, Object>) chromeOptions.get("prefs")).get("profile.managed_default_content_settings.images"));
+
+		// grid template keeps options as well
+		final WebDriverConf firefoxConf = new WebDriverConf("FIREFOX_HEADLESS", "http://localhost:4444/wd/hub")
+				.withPageLoadStrategy("none")
+				.withBlockImages(true)
+				.withMuteMedia(true)
+				.withBlockedHosts("ads.example.org");
+
+		final Capabilities firefox = new WebDriverFactory(firefoxConf).getOptionsTemplate();
+		assertEquals("none", firefox.getCapability(CapabilityType.PAGE_LOAD_STRATEGY).toString());
+
+		final FirefoxProfile profile = new FirefoxOptions(firefox).getProfile();
+		assertEquals(2, profile.getIntegerPreference("permissions.default.image", 0));
+		assertEquals(5, profile.getIntegerPreference("media.autoplay.default", 0));
+		assertEquals("0.0", profile.getStringPreference("media.volume_scale", null));
+		assertEquals("ads.example.org", profile.getStringPreference("network.dns.localDomains", null));
+
+		// profile is encoded only once for every grid session
+		final FirefoxProfile shared = (FirefoxProfile) firefox.getCapability(FirefoxDriver.PROFILE);
+		assertSame(shared.toJson(), shared.toJson());
+	}
+
+	/**
+	 * Stand-in Selenium Grid hub, it opens and closes fake sessions
+	 */
+	private static final class StandInHub implements AutoCloseable {
+
+		final AtomicInteger attempts = new AtomicInteger(0);
+
+		final AtomicInteger open = new AtomicInteger(0);
+
+		volatile boolean failing = false;
+
+		private final HttpServer server;
+
+		StandInHub() throws IOException {
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.createContext("/wd/hub/session", this::handle);
+			server.start();
+		}
+
+		URL url() throws IOException {
+			return new URL(String.format("http://127.0.0.1:%d/wd/hub", server.getAddress().getPort()));
+		}
+
+		private void handle(final HttpExchange exchange) throws IOException {
+
+			String body = "{\"value\": null}";
+			int status = 200;
+
+			if (exchange.getRequestMethod().equals("POST")) {
+				attempts.incrementAndGet();
+				if (failing) {
+					status = 500;
+					body = "{\"value\": {\"error\": \"session not created\", \"message\": \"no capacity\"}}";
+				} else {
+					body = String.format("{\"value\": {\"sessionId\": \"s%d\", \"capabilities\": {\"browserName\": \"firefox\"}}}",
+							open.incrementAndGet());
+				}
+			} else if (exchange.getRequestMethod().equals("DELETE")) {
+				open.decrementAndGet();
+			}
+
+			final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		}
+
+		@Override
+		public void close() {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void testGridRoutingWithStandInHubs() throws Exception {
+
+		try (StandInHub first = new StandInHub(); StandInHub second = new StandInHub(); StandInHub broken = new StandInHub()) {
+
+			broken.failing = true;
+
+			WebDriverConf conf = new WebDriverConf("FIREFOX_HEADLESS",
+					String.join(",", first.url().toString(), broken.url().toString(), second.url().toString()),
+					null, null, "LEAST_OUTSTANDING");
+
+			WebDriverFactory underTest = new WebDriverFactory(conf);
+
+			final List<WebDriver> drivers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				drivers.add(underTest.newResource());
+			}
+
+			// broken hub is tried once then quarantined, load is balanced on healthy ones
+			assertThat(drivers.get(0), instanceOf(RemoteWebDriver.class));
+			assertEquals(1, broken.attempts.get());
+			assertEquals(2, first.open.get());
+			assertEquals(2, second.open.get());
+
+			underTest.closeResource(drivers.remove(0));
+			underTest.closeResource(drivers.remove(0));
+			assertEquals(2, first.open.get() + second.open.get());
+
+			// new sessions rebalance hubs
+			drivers.add(underTest.newResource());
+			drivers.add(underTest.newResource());
+			assertEquals(2, first.open.get());
+			assertEquals(2, second.open.get());
+
+			drivers.forEach(underTest::closeResource);
+			assertEquals(0, first.open.get() + second.open.get());
+		}
+	}
+
+	@Test
+	public void testGridRouterStrategies() throws Exception {
+
+		final URL slow = new URL("http://slow:4444/wd/hub");
+		final URL fast = new URL("http://fast:4444/wd/hub");
+
+		GridRouter roundRobin = new GridRouter(Arrays.asList(slow, fast), GridRouter.Routing.ROUND_ROBIN, Duration.ofMinutes(1));
+		final List<URL> used = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			used.add(roundRobin.open(url -> url));
+		}
+		assertEquals(Arrays.asList(slow, fast, slow, fast), used);
+
+		GridRouter lowestLatency = new GridRouter(Arrays.asList(slow, fast), GridRouter.Routing.LOWEST_LATENCY, Duration.ofMinutes(1));
+		for (int i = 0; i < 2; i++) {
+			lowestLatency.open(url -> {
+				try {
+					Thread.sleep(url == slow ? 30L : 1L);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new Object();
+			});
+		}
+
+		// after both endpoints are measured only fast one is used
+		final AtomicInteger slowSessions = new AtomicInteger(0);
+		for (int i = 0; i < 4; i++) {
+			lowestLatency.open(url -> {
+				if (url == slow) {
+					slowSessions.incrementAndGet();
+				}
+				return new Object();
+			});
+		}
+		assertEquals(0, slowSessions.get());
+
+		// slow one is probed once every probe interval
+		for (int i = 6; i < GridRouter.PROBE_INTERVAL; i++) {
+			lowestLatency.open(url -> {
+				if (url == slow) {
+					slowSessions.incrementAndGet();
+				}
+				return new Object();
+			});
+		}
+		assertEquals(1, slowSessions.get());
+
+		// failing endpoint is skipped, session is opened on the other one
+		GridRouter failover = new GridRouter(Arrays.asList(slow, fast), GridRouter.Routing.ROUND_ROBIN, Duration.ofMinutes(1));
+		final AtomicInteger slowAttempts = new AtomicInteger(0);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(fast, failover.open(url -> {
+				if (url == slow) {
+					slowAttempts.incrementAndGet();
+					throw new IllegalStateException("hub down");
+				}
+				return url;
+			}));
+		}
+		assertEquals(1, slowAttempts.get());
+	}
 }
@@ -0,0 +1,167 @@
+package it.vinmar.jmeter;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.protocol.java.sampler.JavaSamplerContext;
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import it.vinmar.ResourceArbiter;
+import it.vinmar.ResourceArbiter.Factory;
+
+public class WebDriverSamplerTest {
+
+	private static final String POOL = "SamplerTestPool";
+
+	private final List<String> visited = new CopyOnWriteArrayList<>();
+
+	private ResourceArbiter<WebDriver> pool;
+
+	/**
+	 * Stub browser: every page has a body, a page containing "broken" fails to load
+	 */
+	private WebDriver stubDriver() {
+		return (WebDriver) Proxy.newProxyInstance(
+				WebDriverSamplerTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "get":
+						if (((String) args[0]).contains("broken")) {
+							throw new WebDriverException("page is broken");
+						}
+						visited.add((String) args[0]);
+						return null;
+					case "findElements":
+						return args[0].toString().contains("//body")
+								? Collections.singletonList((WebElement) null)
+								: Collections.emptyList();
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						return null;
+					}
+				});
+	}
+
+	@BeforeEach
+	public void setUp() {
+
+		pool = ResourceArbiter.builder(new Factory<WebDriver>() {
+			@Override
+			public WebDriver newResource() {
+				return stubDriver();
+			}
+
+			@Override
+			public void closeResource(final WebDriver resource) {
+				// nothing to close
+			}
+		}).size(1).build();
+
+		WebDriverPools.register(POOL, pool);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		WebDriverPools.unregister(POOL);
+		pool.shutdown(Duration.ZERO);
+	}
+
+	private SampleResult sample(final String url, final String xpath) {
+
+		final WebDriverSampler underTest = new WebDriverSampler();
+
+		final Arguments params = underTest.getDefaultParameters();
+		params.removeArgument(WebDriverSampler.POOL);
+		params.removeArgument(WebDriverSampler.URL);
+		params.removeArgument(WebDriverSampler.XPATH);
+		params.removeArgument(WebDriverSampler.RESERVATION_TIMEOUT);
+		params.addArgument(WebDriverSampler.POOL, POOL);
+		params.addArgument(WebDriverSampler.URL, url);
+		params.addArgument(WebDriverSampler.XPATH, xpath);
+		params.addArgument(WebDriverSampler.RESERVATION_TIMEOUT, "100");
+
+		final JavaSamplerContext context = new JavaSamplerContext(params);
+
+		underTest.setupTest(context);
+		final SampleResult result = underTest.runTest(context);
+		underTest.teardownTest(context);
+
+		return result;
+	}
+
+	@Test
+	public void testPageFound() {
+
+		final SampleResult result = sample("http://localhost/found", "//body");
+
+		assertTrue(result.isSuccessful());
+		assertEquals(2, result.getSubResults().length);
+		assertEquals(WebDriverSampler.RESERVATION_LABEL, result.getSubResults()[0].getSampleLabel());
+		assertEquals(WebDriverSampler.PAGE_LABEL, result.getSubResults()[1].getSampleLabel());
+		assertTrue(result.getSubResults()[0].isSuccessful());
+		assertTrue(result.getSubResults()[1].isSuccessful());
+		assertTrue(result.getEndTime() >= result.getSubResults()[1].getEndTime());
+		assertEquals(Collections.singletonList("http://localhost/found"), visited);
+		assertEquals(1, pool.getStats().getIdle());
+	}
+
+	@Test
+	public void testXPathNotFound() {
+
+		final SampleResult result = sample("http://localhost/found", "//missing");
+
+		assertFalse(result.isSuccessful());
+		assertEquals("FAIL", result.getResponseCode());
+		assertTrue(result.getSubResults()[0].isSuccessful());
+		assertFalse(result.getSubResults()[1].isSuccessful());
+		assertEquals(1, pool.getStats().getIdle());
+	}
+
+	@Test
+	public void testPageError() {
+
+		final SampleResult result = sample("http://localhost/broken", "//body");
+
+		assertFalse(result.isSuccessful());
+		assertEquals("ERROR", result.getResponseCode());
+		assertEquals(2, result.getSubResults().length);
+		assertEquals(1, pool.getStats().getIdle());
+	}
+
+	@Test
+	public void testNoDriverAvailable() throws InterruptedException {
+
+		final WebDriver busy = pool.reserve(Duration.ofSeconds(1)).get();
+
+		final SampleResult result = sample("http://localhost/found", "//body");
+
+		assertFalse(result.isSuccessful());
+		assertEquals(1, result.getSubResults().length);
+		assertFalse(result.getSubResults()[0].isSuccessful());
+		assertTrue(visited.isEmpty());
+
+		pool.free(busy);
+	}
+
+	@Test
+	public void testUnknownPool() {
+		assertThrows(IllegalStateException.class, () -> WebDriverPools.get("NoSuchPool"));
+		assertThrows(IllegalStateException.class, () -> WebDriverPools.register(POOL, pool));
+	}
+}
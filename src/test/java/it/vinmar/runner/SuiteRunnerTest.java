@@ -0,0 +1,102 @@
+package it.vinmar.runner;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import it.vinmar.ResourceArbiter;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuiteRunnerTest {
+
+	/**
+	 * It creates a WebDriver stand-in: xpath "//found" matches one element,
+	 * navigation to "broken" host fails
+	 */
+	static WebDriver standInDriver(final Set<String> visited) {
+
+		final String[] current = new String[1];
+
+		return (WebDriver) Proxy.newProxyInstance(
+				SuiteRunnerTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "get":
+						if (((String) args[0]).contains("broken")) {
+							throw new WebDriverException("Navigation failed");
+						}
+						current[0] = (String) args[0];
+						visited.add(current[0]);
+						return null;
+					case "findElements":
+						return args[0].toString().contains("//found")
+								? Collections.<WebElement>singletonList(null)
+								: Collections.<WebElement>emptyList();
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						return null;
+					}
+				});
+	}
+
+	@Test
+	public void testRunSuite() throws Exception {
+
+		final Set<String> visited = ConcurrentHashMap.newKeySet();
+		final ResourceArbiter<WebDriver> pool = new ResourceArbiter<>(Arrays.asList(standInDriver(visited), standInDriver(visited)));
+
+		final Path suite = Files.createTempFile("suite", ".tsv");
+		final Path results = Files.createTempFile("results", ".tsv");
+
+		final StringBuilder content = new StringBuilder("testId\tprotocol\thost\tpath\txpath\n");
+		for (int index = 0; index < 50; index++) {
+			content.append(String.format("T%d\thttps\texample.org\t/page/%d\t//found%n", index, index));
+		}
+		content.append("MISS\thttps\texample.org\t/missing\t//absent\n");
+		content.append("BROKEN\thttps\tbroken.org\t/\t//found\n");
+		content.append("malformed row\n");
+		Files.write(suite, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+		final SuiteRunner.Summary summary = SuiteRunner.builder(pool)
+				.queueCapacity(4)
+				.reservationTimeout(Duration.ofSeconds(10))
+				.build()
+				.run(suite, results);
+
+		assertEquals(53, summary.getTotal());
+		assertEquals(50, summary.getPassed());
+		assertEquals(1, summary.getFailed());
+		assertEquals(2, summary.getErrors());
+		assertEquals(51, visited.size());
+
+		final List<String> lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+		assertEquals(54, lines.size());
+		final String[] miss = lines.stream().filter(line -> line.startsWith("MISS\t")).findFirst().get().split("\t", -1);
+		assertEquals("FAIL", miss[1]);
+		assertEquals("https://example.org/missing", miss[3]);
+
+		final String[] broken = lines.stream().filter(line -> line.startsWith("BROKEN\t")).findFirst().get().split("\t", -1);
+		assertEquals("ERROR", broken[1]);
+		assertTrue(broken[4].startsWith("Navigation failed"));
+
+		// every driver is back into pool
+		assertEquals(2, pool.getStats().getIdle());
+	}
+}